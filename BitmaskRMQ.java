@@ -0,0 +1,293 @@
+package sxa190016;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Bitmask RMQ: Short project 10
+ * 				RMQ structure for Minimum Range Query with a bitmask BlockRMQ over blocks of 64 elements
+ * 				at the bottom and Block-Minima RMQ at the top.
+ *
+ * 				Scanning a block from left to right keeps a stack of the positions whose element is not
+ * 				greater than any later element so far, the right spine of the Cartesian tree of the block.
+ * 				The stack after position r is stored as one 64-bit word, bit p set if position p of the
+ * 				block is on it. The leftmost minimum of [l, r] in a block is then the lowest position
+ * 				not below l on the stack of r: one AND with a shifted mask and one numberOfTrailingZeros.
+ * 				This takes a long per element instead of a table per Cartesian type, so the blocks are 64
+ * 				elements long rather than log4(n)/2, and the sparse array is about 10 times smaller than
+ * 				the one of FischerHeunRMQ.
+ * 				The structure is immutable once constructed, so a single instance can be shared by any
+ * 				number of querying threads without locking, as long as the input array is not modified.
+ * 				Built with BuildOptions.order(Order.MAX), every query returns the maximum instead.
+ */
+public class BitmaskRMQ implements RangeMinQuery {
+	/**
+	 * Block size of the BlockRMQ, the number of bits of a stack word
+	 */
+	static final int BLOCK_SIZE = 64;
+
+	/**
+	 * log2(BLOCK_SIZE)
+	 */
+	private static final int BLOCK_SHIFT = 6;
+
+	/**
+	 * Store the size of the input array.
+	 */
+	private final int n;
+
+	/**
+	 * The input array
+	 */
+	private final int [] arr;
+
+	/**
+	 * Stack of the block of each element after scanning it, bit p set if position p of the block is on it
+	 */
+	private final long [] stackMasks;
+
+	/**
+	 * The minimum array populated with the minimum of each block level RMQ
+	 */
+	private final int [] minArr;
+
+	/**
+	 * Sparse array to allow constant time search, holding the index of the block with the leftmost minimum
+	 */
+	private final int [][] sparseArr;
+
+	/**
+	 * Order of the elements, 0 to query the minimum and -1 to query the maximum. Every comparison
+	 * is made on value^mask, which reverses the order of the ints when the mask is -1.
+	 */
+	private final int mask;
+
+	/**
+	 * Constructor to initialize the BitmaskRMQ class
+	 *
+	 * @param arr	The input array to be queried
+	 */
+	public BitmaskRMQ(int [] arr)
+	{
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the BitmaskRMQ class with the given build options
+	 *
+	 * @param arr		The input array to be queried
+	 * @param options	The options of the build. The block size is always 64.
+	 */
+	public BitmaskRMQ(int [] arr, BuildOptions options)
+	{
+		this.mask = options.order()==BuildOptions.Order.MAX?-1:0;
+		this.n = arr.length;
+		this.arr = arr;
+		this.stackMasks = new long [this.n];
+		this.minArr = new int [this.n>0?BlockLayout.blocks(this.n, BLOCK_SIZE):0];
+		this.sparseArr = new int [this.n>0?BlockLayout.levels(this.minArr.length):0][];
+		if(this.n>0)
+		{
+			//Fill the stack words and the minArray containing the minimum elements of each block
+			this.fillStackMasks(options.pool());
+
+			//Fill the Sparse Table in a DP fashion
+			this.fillSparseArr(options.pool());
+		}
+	}
+
+	/**
+	 * Helper method to fill the stack word of every element and the minimum of each block
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillStackMasks(ForkJoinPool pool)
+	{
+		ParallelBuild.forRange(pool, 0, this.minArr.length, (from, to) -> {
+			for(int b=from; b<to; b++)
+			{
+				int start = b<<BLOCK_SHIFT;
+				int end = Math.min(start+BLOCK_SIZE, this.n);
+				long stack = 0;
+				for(int x=start; x<end; x++)
+				{
+					//Pop the positions holding a greater element, the top of the stack being its highest bit
+					int value = this.arr[x]^this.mask;
+					while(stack!=0 && (this.arr[start+63-Long.numberOfLeadingZeros(stack)]^this.mask)>value)
+					{
+						stack &= ~Long.highestOneBit(stack);
+					}
+					stack |= 1L<<(x-start);
+					this.stackMasks[x] = stack;
+				}
+				this.minArr[b] = this.arr[start+Long.numberOfTrailingZeros(stack)];
+			}
+		});
+	}
+
+	/**
+	 * Helper method to fill the sparseArray in a DP fashion
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillSparseArr(ForkJoinPool pool)
+	{
+		int [] first = new int [this.minArr.length];
+		ParallelBuild.forRange(pool, 0, first.length, (from, to) -> {
+			for(int j=from; j<to; j++)
+			{
+				first[j] = j;
+			}
+		});
+		this.sparseArr[0] = first;
+		for(int i=1; i<this.sparseArr.length; i++)
+		{
+			this.sparseArr[i] = new int [BlockLayout.levelSize(this.minArr.length, i)];
+			int [] prev = this.sparseArr[i-1];
+			int [] level = this.sparseArr[i];
+			int half = 1<<(i-1);
+			ParallelBuild.forRange(pool, 0, level.length, (from, to) -> {
+				for(int j=from; j<to; j++)
+				{
+					int left = prev[j];
+					int right = prev[Math.min(j+half, prev.length-1)];
+					level[j] = (this.minArr[left]^this.mask)<=(this.minArr[right]^this.mask)?left:right;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time
+	 *
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public int queryMinRMQIndex(int i, int j)
+	{
+		int k = BlockLayout.log2(j-i+1);
+		int left = this.sparseArr[k][i];
+		int right = this.sparseArr[k][j-(1<<k)+1];
+		return (this.minArr[left]^this.mask)<=(this.minArr[right]^this.mask)?left:right;
+	}
+
+	/**
+	 * The main method to query the Bitmask RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	public int query(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = i>>>BLOCK_SHIFT;
+			int bj = j>>>BLOCK_SHIFT;
+			if(bi==bj)
+			{
+				return this.arr[this.blockQueryIndex(i, j)];
+			}
+			int result = this.first(this.arr[this.blockQueryIndex(i, (bi<<BLOCK_SHIFT)+BLOCK_SIZE-1)], this.arr[this.blockQueryIndex(bj<<BLOCK_SHIFT, j)]);
+			if(bi+1<bj)
+			{
+				result = this.first(result, this.minArr[this.queryMinRMQIndex(bi+1, bj-1)]);
+			}
+			return result;
+		}
+		else
+		{
+			//Return max value if input is not in the correct format
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Bitmask RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = i>>>BLOCK_SHIFT;
+			int bj = j>>>BLOCK_SHIFT;
+			if(bi==bj)
+			{
+				return this.blockQueryIndex(i, j);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			int result = this.blockQueryIndex(i, (bi<<BLOCK_SHIFT)+BLOCK_SIZE-1);
+			if(bi+1<bj)
+			{
+				int block = this.queryMinRMQIndex(bi+1, bj-1);
+				int top = this.blockQueryIndex(block<<BLOCK_SHIFT, (block<<BLOCK_SHIFT)+BLOCK_SIZE-1);
+				result = (this.arr[top]^this.mask)<(this.arr[result]^this.mask)?top:result;
+			}
+			int right = this.blockQueryIndex(bj<<BLOCK_SHIFT, j);
+			return (this.arr[right]^this.mask)<(this.arr[result]^this.mask)?right:result;
+		}
+		else
+		{
+			//Return -1 if input is not in the correct format
+			return -1;
+		}
+	}
+
+	/**
+	 * Helper method to find the position of the leftmost minimum element in a range of one block,
+	 * the lowest position not below i on the stack of j
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range, in the block of i
+	 * @return		The index of the leftmost minimum element in the range
+	 */
+	private int blockQueryIndex(int i, int j)
+	{
+		return (i&~(BLOCK_SIZE-1))+Long.numberOfTrailingZeros(this.stackMasks[j]&(-1L<<i));
+	}
+
+	/**
+	 * Get the memory used by the structure on top of the input array: the stack words, the minArray
+	 * and the sparse array, without the array headers
+	 *
+	 * @return		The size of the structure in bytes
+	 */
+	public long indexBytes()
+	{
+		return 8L*this.stackMasks.length+4L*this.minArr.length+BlockLayout.bytes(this.sparseArr);
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		return new MemoryFootprint("BitmaskRMQ")
+				.input(MemoryFootprint.arrayBytes(this.arr.length, Integer.BYTES))
+				.object("object", 2*Integer.BYTES, 4)
+				.array("stackMasks", this.stackMasks)
+				.array("minArr", this.minArr)
+				.jagged("sparseArr", this.sparseArr);
+	}
+
+	/**
+	 * Helper method to pick the first of two elements in the order of the structure
+	 *
+	 * @param a		The first element
+	 * @param b		The second element
+	 * @return		b if it comes strictly before a in the order, a otherwise
+	 */
+	private int first(int a, int b)
+	{
+		return (b^this.mask)<(a^this.mask)?b:a;
+	}
+}
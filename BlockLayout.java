@@ -0,0 +1,197 @@
+package sxa190016;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Block Layout: Short project 10
+ * 				Integer arithmetic shared by the block decomposition of the RMQ structures:
+ * 				block sizes, number of blocks and sparse array levels.
+ */
+final class BlockLayout {
+	/**
+	 * Largest block size of HybridRMQ, whose in-block positions are stored in bytes
+	 */
+	static final int MAX_HYBRID_BLOCK_SIZE = 128;
+
+	/**
+	 * Largest block size of the structures with Fully-Preprocessed tables, whose mapping of the
+	 * 4^blockSize Cartesian Encodings to tables takes 64 MB at 12 and 4 GB at 15
+	 */
+	static final int MAX_FISCHER_HEUN_BLOCK_SIZE = 12;
+
+	/**
+	 * Block size of HybridRMQ, log2(n)
+	 *
+	 * @param n		The size of the input array
+	 * @return		The block size, at least 1
+	 */
+	static int hybridBlockSize(int n)
+	{
+		return Math.max(1, (int) Math.round(Math.log(n)/Math.log(2)));
+	}
+
+	/**
+	 * Block size of HybridRMQ for a long-indexed input array, log2(n)
+	 *
+	 * @param n		The size of the input array
+	 * @return		The block size, at least 1
+	 */
+	static int hybridBlockSize(long n)
+	{
+		return Math.max(1, (int) Math.round(Math.log(n)/Math.log(2)));
+	}
+
+	/**
+	 * Block size of HybridRMQ with the SIMD scan, 4*log2(n) rounded down to a multiple of 16 ints,
+	 * the widest vector, and at most MAX_HYBRID_BLOCK_SIZE
+	 *
+	 * @param n		The size of the input array
+	 * @return		The block size, at least 16
+	 */
+	static int vectorBlockSize(int n)
+	{
+		return Math.min(MAX_HYBRID_BLOCK_SIZE, Math.max(16, 4*hybridBlockSize(n)/16*16));
+	}
+
+	/**
+	 * Block size of FischerHeunRMQ, log4(n)/2
+	 *
+	 * @param n		The size of the input array
+	 * @return		The block size, at least 1
+	 */
+	static int fischerHeunBlockSize(int n)
+	{
+		return Math.max(1, (int) Math.round((Math.log(n)/Math.log(4))/2));
+	}
+
+	/**
+	 * Block size of FischerHeunRMQ for a long-indexed input array, log4(n)/2
+	 *
+	 * @param n		The size of the input array
+	 * @return		The block size, at least 1
+	 */
+	static int fischerHeunBlockSize(long n)
+	{
+		return Math.max(1, (int) Math.round((Math.log(n)/Math.log(4))/2));
+	}
+
+	/**
+	 * Round a block size to the nearest power of two, rounding ties up
+	 *
+	 * @param blockSize	The block size
+	 * @return			The nearest power of two
+	 */
+	static int powerOfTwo(int blockSize)
+	{
+		int low = Integer.highestOneBit(Math.max(1, blockSize));
+		return blockSize-low<2*low-blockSize?low:2*low;
+	}
+
+	/**
+	 * Get the shift dividing an index by the block size
+	 *
+	 * @param blockSize	The block size
+	 * @return			log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	static int shift(int blockSize)
+	{
+		return Integer.bitCount(blockSize)==1?log2(blockSize):-1;
+	}
+
+	/**
+	 * Get the number of blocks covering the input array
+	 *
+	 * @param n			The size of the input array
+	 * @param blockSize	The block size
+	 * @return			ceil(n/blockSize)
+	 */
+	static int blocks(int n, int blockSize)
+	{
+		return (n-1)/blockSize+1;
+	}
+
+	/**
+	 * Get the number of blocks covering a long-indexed input array
+	 *
+	 * @param n			The size of the input array
+	 * @param blockSize	The block size
+	 * @return			ceil(n/blockSize)
+	 */
+	static long blocks(long n, int blockSize)
+	{
+		return (n-1)/blockSize+1;
+	}
+
+	/**
+	 * Get the number of levels of a sparse array over m blocks
+	 *
+	 * @param m		The number of blocks
+	 * @return		ceil(log2(m))+1
+	 */
+	static int levels(int m)
+	{
+		return 33-Integer.numberOfLeadingZeros(m-1);
+	}
+
+	/**
+	 * Get the size of a level of a sparse array over m blocks
+	 *
+	 * @param m		The number of blocks
+	 * @param k		The level
+	 * @return		The number of ranges of 2^k blocks starting in the m blocks, at least 1
+	 */
+	static int levelSize(int m, int k)
+	{
+		return Math.max(m-(1<<k)+1, 1);
+	}
+
+	/**
+	 * Get the size of a level of a sparse array over m blocks of a long-indexed input array
+	 *
+	 * @param m		The number of blocks
+	 * @param k		The level
+	 * @return		The number of ranges of 2^k blocks starting in the m blocks, at least 1
+	 */
+	static long levelSize(long m, int k)
+	{
+		return Math.max(m-(1L<<k)+1, 1);
+	}
+
+	/**
+	 * Floor of the base 2 logarithm
+	 *
+	 * @param x		A positive number
+	 * @return		floor(log2(x))
+	 */
+	static int log2(int x)
+	{
+		return 31-Integer.numberOfLeadingZeros(x);
+	}
+
+	/**
+	 * Floor of the base 2 logarithm of a long
+	 *
+	 * @param x		A positive number
+	 * @return		floor(log2(x))
+	 */
+	static int log2(long x)
+	{
+		return 63-Long.numberOfLeadingZeros(x);
+	}
+
+	/**
+	 * Size of the levels of a sparse array, without the array headers
+	 *
+	 * @param sparseArr	The levels of the sparse array
+	 * @return			The size of the levels in bytes
+	 */
+	static long bytes(int [][] sparseArr)
+	{
+		long bytes = 0;
+		for(int [] level : sparseArr)
+		{
+			bytes += 4L*level.length;
+		}
+		return bytes;
+	}
+}
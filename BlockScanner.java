@@ -0,0 +1,59 @@
+package sxa190016;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Block Scanner: Short project 10
+ * 				Linear scan for the minimum of a range of an int array, used by HybridRMQ for the blocks
+ * 				at both ends of a query.
+ *
+ * 				SCALAR compares one element at a time. vector() loads VectorBlockScanner, which compares
+ * 				a full SIMD register of elements per instruction with the jdk.incubator.vector API, and
+ * 				falls back to SCALAR when the class or the module is missing, so the rest of the code
+ * 				compiles and runs on any JVM. The class is looked up reflectively because the module must
+ * 				be added explicitly, with --add-modules jdk.incubator.vector, at compile and run time.
+ */
+interface BlockScanner {
+	/**
+	 * Scanner comparing one element at a time
+	 */
+	BlockScanner SCALAR = (arr, start, end, mask) -> {
+		int result = arr[start];
+		for(int i=start+1; i<end; i++)
+		{
+			if((arr[i]^mask)<(result^mask))
+			{
+				result = arr[i];
+			}
+		}
+		return result;
+	};
+
+	/**
+	 * Find the minimum element in a given range, every comparison made on value^mask
+	 *
+	 * @param arr		The array to be scanned
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range, greater than start
+	 * @param mask		0 to find the minimum, -1 to find the maximum
+	 * @return			The minimum element in the range
+	 */
+	int min(int [] arr, int start, int end, int mask);
+
+	/**
+	 * Get the SIMD scanner if the running JVM provides the Vector API
+	 *
+	 * @return		A VectorBlockScanner, or SCALAR if jdk.incubator.vector is not available
+	 */
+	static BlockScanner vector()
+	{
+		try
+		{
+			return (BlockScanner) Class.forName("sxa190016.VectorBlockScanner").getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException | LinkageError e)
+		{
+			return SCALAR;
+		}
+	}
+}
@@ -0,0 +1,422 @@
+package sxa190016;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Block Size Tuner: Short project 10
+ * 				Chooses the block size of a HybridRMQ or FischerHeunRMQ empirically, on the machine it runs on.
+ *
+ * 				The formulas log2(n) and log4(n)/2 balance the asymptotic costs, but the best block size
+ * 				also depends on the cache sizes and the query mix. The tuner builds the structure with
+ * 				each candidate block size, measures its build time, its memory footprint and its mean query
+ * 				latency on a sample workload of random ranges, half of them uniform and half of them short,
+ * 				and keeps the structure with the lowest latency. report() lists the latency/memory
+ * 				trade-off of every candidate, so a smaller structure can be chosen by hand instead. The
+ * 				memory of a candidate is the total of its memoryFootprint(), so it does not depend on
+ * 				when the collector runs.
+ */
+public class BlockSizeTuner {
+	/**
+	 * Number of ranges of the sample workload, a power of two
+	 */
+	private static final int QUERIES = 1<<16;
+
+	/**
+	 * Number of passes over the workload before measuring
+	 */
+	private static final int WARMUP_PASSES = 3;
+
+	/**
+	 * Number of measured passes over the workload, the fastest one is kept
+	 */
+	private static final int MEASURED_PASSES = 3;
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Block Size Tuner: Short project 10
+	 * 				Builds the structure under test with a given block size, e.g.
+	 * 				(arr, b) -> new FischerHeunRMQ(arr, new BuildOptions().blockSize(b))
+	 */
+	@FunctionalInterface
+	public interface Engine {
+		/**
+		 * Build the structure over the input array
+		 *
+		 * @param arr		The input array
+		 * @param blockSize	The block size to build with
+		 * @return			The structure
+		 */
+		RangeMinQuery build(int [] arr, int blockSize);
+	}
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Block Size Tuner: Short project 10
+	 * 				Measurements of one candidate block size: build time, query latency and
+	 * 				memory footprint.
+	 */
+	public static final class Candidate {
+		/**
+		 * The block size
+		 */
+		private final int blockSize;
+
+		/**
+		 * Time to build the structure in milliseconds
+		 */
+		private final double buildMillis;
+
+		/**
+		 * Mean latency of a query of the workload in nanoseconds
+		 */
+		private final double queryNanos;
+
+		/**
+		 * Memory footprint of the structure, excluding the input array
+		 */
+		private final MemoryFootprint footprint;
+
+		/**
+		 * Constructor to record the measurements of a candidate
+		 *
+		 * @param blockSize		The block size
+		 * @param buildMillis	The build time in milliseconds
+		 * @param queryNanos	The mean query latency in nanoseconds
+		 * @param footprint	The memory footprint
+		 */
+		Candidate(int blockSize, double buildMillis, double queryNanos, MemoryFootprint footprint)
+		{
+			this.blockSize = blockSize;
+			this.buildMillis = buildMillis;
+			this.queryNanos = queryNanos;
+			this.footprint = footprint;
+		}
+
+		/**
+		 * Get the block size
+		 *
+		 * @return		The block size
+		 */
+		public int blockSize()
+		{
+			return this.blockSize;
+		}
+
+		/**
+		 * Get the build time
+		 *
+		 * @return		The time to build the structure in milliseconds
+		 */
+		public double buildMillis()
+		{
+			return this.buildMillis;
+		}
+
+		/**
+		 * Get the query latency
+		 *
+		 * @return		The mean latency of a query of the workload in nanoseconds
+		 */
+		public double queryNanos()
+		{
+			return this.queryNanos;
+		}
+
+		/**
+		 * Get the memory footprint, the total of the components of the structure
+		 *
+		 * @return		The footprint of the structure in bytes, excluding the input array
+		 */
+		public long bytes()
+		{
+			return this.footprint.total();
+		}
+
+		/**
+		 * Get the memory footprint of each component of the structure
+		 *
+		 * @return		The footprint report of the structure
+		 */
+		public MemoryFootprint footprint()
+		{
+			return this.footprint;
+		}
+	}
+
+	/**
+	 * Engine building the structures
+	 */
+	private final Engine engine;
+
+	/**
+	 * The input array
+	 */
+	private final int [] arr;
+
+	/**
+	 * Start indices of the ranges of the workload
+	 */
+	private final int [] lo;
+
+	/**
+	 * End indices of the ranges of the workload
+	 */
+	private final int [] hi;
+
+	/**
+	 * Measurements of the candidates tuned so far, in the order they were measured
+	 */
+	private final List<Candidate> candidates = new ArrayList<>();
+
+	/**
+	 * The candidate with the lowest query latency, null before tune()
+	 */
+	private Candidate best;
+
+	/**
+	 * XOR of all the answers, kept so that the JIT cannot drop the queries
+	 */
+	private int sink;
+
+	/**
+	 * Constructor to initialize the tuner with a default workload of random ranges
+	 *
+	 * @param engine	The engine building the structure with a given block size
+	 * @param arr		The input array, not empty
+	 */
+	public BlockSizeTuner(Engine engine, int [] arr)
+	{
+		this(engine, arr, new Random(42));
+	}
+
+	/**
+	 * Constructor to initialize the tuner with a workload of random ranges, half of them uniform
+	 * and half of them with a length uniform on a logarithmic scale
+	 *
+	 * @param engine	The engine building the structure with a given block size
+	 * @param arr		The input array, not empty
+	 * @param rand		The source of the random ranges
+	 */
+	public BlockSizeTuner(Engine engine, int [] arr, Random rand)
+	{
+		if(arr.length==0)
+		{
+			throw new IllegalArgumentException("Cannot tune on an empty array");
+		}
+		this.engine = engine;
+		this.arr = arr;
+		this.lo = new int [QUERIES];
+		this.hi = new int [QUERIES];
+		int n = arr.length;
+		for(int x=0; x<QUERIES; x++)
+		{
+			if((x&1)==0)
+			{
+				int i = rand.nextInt(n);
+				int j = rand.nextInt(n);
+				this.lo[x] = Math.min(i, j);
+				this.hi[x] = Math.max(i, j);
+			}
+			else
+			{
+				int len = (int) Math.min(n, 1L<<rand.nextInt(BlockLayout.log2(n)+1));
+				len = 1+rand.nextInt(len);
+				this.lo[x] = rand.nextInt(n-len+1);
+				this.hi[x] = this.lo[x]+len-1;
+			}
+		}
+	}
+
+	/**
+	 * Constructor to initialize the tuner with a given workload
+	 *
+	 * @param engine	The engine building the structure with a given block size
+	 * @param arr		The input array, not empty
+	 * @param lo		The start indices of the ranges, all in [0, n)
+	 * @param hi		The end indices of the ranges, hi[x] in [lo[x], n)
+	 */
+	public BlockSizeTuner(Engine engine, int [] arr, int [] lo, int [] hi)
+	{
+		if(arr.length==0 || lo.length==0 || lo.length!=hi.length)
+		{
+			throw new IllegalArgumentException("Need a non-empty array and as many start as end indices");
+		}
+		this.engine = engine;
+		this.arr = arr;
+		this.lo = lo;
+		this.hi = hi;
+	}
+
+	/**
+	 * Candidate block sizes of a HybridRMQ: the powers of two from 8 to 128 and log2(n)
+	 *
+	 * @param n		The size of the input array
+	 * @return		The candidate block sizes in increasing order
+	 */
+	public static int [] hybridCandidates(int n)
+	{
+		TreeSet<Integer> sizes = new TreeSet<>(List.of(8, 16, 32, 64, BlockLayout.MAX_HYBRID_BLOCK_SIZE));
+		sizes.add(BlockLayout.hybridBlockSize(Math.max(n, 1)));
+		return sizes.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Candidate block sizes of a FischerHeunRMQ: log4(n)/2 and its neighbours, up to
+	 * BlockLayout.MAX_FISCHER_HEUN_BLOCK_SIZE
+	 *
+	 * @param n		The size of the input array
+	 * @return		The candidate block sizes in increasing order
+	 */
+	public static int [] fischerHeunCandidates(int n)
+	{
+		int blockSize = BlockLayout.fischerHeunBlockSize(Math.max(n, 1));
+		TreeSet<Integer> sizes = new TreeSet<>();
+		for(int b=blockSize-2; b<=blockSize+2; b++)
+		{
+			sizes.add(Math.max(2, Math.min(b, BlockLayout.MAX_FISCHER_HEUN_BLOCK_SIZE)));
+		}
+		return sizes.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Measure every candidate block size and return the structure built with the fastest one.
+	 * Only the fastest structure so far is kept alive while the next candidate is measured.
+	 *
+	 * @param blockSizes	The candidate block sizes
+	 * @return				The structure built with the block size of the lowest query latency
+	 */
+	public RangeMinQuery tune(int... blockSizes)
+	{
+		if(blockSizes.length==0)
+		{
+			throw new IllegalArgumentException("Need at least one candidate block size");
+		}
+		RangeMinQuery winner = null;
+		for(int blockSize : blockSizes)
+		{
+			long start = System.nanoTime();
+			RangeMinQuery rmq = this.engine.build(this.arr, blockSize);
+			double buildMillis = (System.nanoTime()-start)/1e6;
+
+			Candidate candidate = new Candidate(blockSize, buildMillis, this.measure(rmq), rmq.memoryFootprint());
+			this.candidates.add(candidate);
+			if(this.best==null || candidate.queryNanos<this.best.queryNanos)
+			{
+				this.best = candidate;
+				winner = rmq;
+			}
+		}
+		return winner;
+	}
+
+	/**
+	 * Helper method to measure the mean query latency of a structure on the workload
+	 *
+	 * @param rmq	The structure
+	 * @return		The mean latency of a query in nanoseconds, of the fastest measured pass
+	 */
+	private double measure(RangeMinQuery rmq)
+	{
+		for(int p=0; p<WARMUP_PASSES; p++)
+		{
+			this.pass(rmq);
+		}
+		long fastest = Long.MAX_VALUE;
+		for(int p=0; p<MEASURED_PASSES; p++)
+		{
+			long start = System.nanoTime();
+			this.pass(rmq);
+			fastest = Math.min(fastest, System.nanoTime()-start);
+		}
+		return (double) fastest/this.lo.length;
+	}
+
+	/**
+	 * Helper method to answer every range of the workload once
+	 *
+	 * @param rmq	The structure
+	 */
+	private void pass(RangeMinQuery rmq)
+	{
+		int sink = 0;
+		for(int x=0; x<this.lo.length; x++)
+		{
+			sink ^= rmq.query(this.lo[x], this.hi[x]);
+		}
+		this.sink ^= sink;
+	}
+
+	/**
+	 * Get the measurements of the candidates tuned so far
+	 *
+	 * @return		The candidates in the order they were measured
+	 */
+	public List<Candidate> candidates()
+	{
+		return List.copyOf(this.candidates);
+	}
+
+	/**
+	 * Get the candidate chosen by tune()
+	 *
+	 * @return		The candidate with the lowest query latency, null before tune()
+	 */
+	public Candidate best()
+	{
+		return this.best;
+	}
+
+	/**
+	 * Report the latency/memory trade-off of every candidate, against the chosen one
+	 *
+	 * @return		One line per candidate, the chosen one marked with a *
+	 */
+	public String report()
+	{
+		StringBuilder sb = new StringBuilder();
+		for(Candidate c : this.candidates)
+		{
+			sb.append(String.format("%s block size: %3d  build: %9.1f ms  query: %8.1f ns (%+6.1f%%)  memory: %9.1f MB (%+6.1f%%)%s%n",
+					c==this.best?"*":" ", c.blockSize, c.buildMillis, c.queryNanos, 100*(c.queryNanos/this.best.queryNanos-1),
+					c.bytes()/1e6, this.best.bytes()==0?0:100*((double) c.bytes()/this.best.bytes()-1),
+					c.footprint.cartesianTypes()<0?"":String.format("  types: %,d of %,d", c.footprint.cartesianTypes(), c.footprint.possibleCartesianTypes())));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Main method to tune the block size of a HybridRMQ or FischerHeunRMQ on an input file
+	 *
+	 * @param args	The binary input file and the engine (HybridRMQ or FischerHeunRMQ)
+	 * @throws Exception	If the input cannot be read
+	 */
+	public static void main(String args []) throws Exception
+	{
+		int [] arr = DatasetLoader.load(args.length>0?args[0]:"C:\\Users\\shari\\Downloads\\128M.bin");
+		String engine = args.length>1?args[1]:"FischerHeunRMQ";
+
+		BlockSizeTuner tuner;
+		RangeMinQuery rmq;
+		if(engine.equals("HybridRMQ"))
+		{
+			tuner = new BlockSizeTuner((a, b) -> new HybridRMQ(a, new BuildOptions().blockSize(b)), arr);
+			rmq = tuner.tune(hybridCandidates(arr.length));
+		}
+		else
+		{
+			tuner = new BlockSizeTuner((a, b) -> new FischerHeunRMQ(a, new BuildOptions().blockSize(b)), arr);
+			rmq = tuner.tune(fischerHeunCandidates(arr.length));
+		}
+		System.out.println(engine+" n: "+arr.length);
+		System.out.print(tuner.report());
+		System.out.println("Chosen block size: "+tuner.best().blockSize()+" sample query(0, n-1): "+rmq.query(0, arr.length-1));
+		System.out.print(rmq.memoryFootprint());
+	}
+}
@@ -0,0 +1,283 @@
+package sxa190016;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Build Options: Short project 10
+ * 				Options controlling how HybridRMQ and FischerHeunRMQ are built. The default
+ * 				options give the same structure as the single argument constructors.
+ * 				Usage: new HybridRMQ(arr, new BuildOptions().parallel(ForkJoinPool.commonPool()));
+ */
+public class BuildOptions {
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Build Options: Short project 10
+	 * 				Order of the elements, MIN to query the range minimum and MAX to query the range maximum
+	 */
+	public enum Order {
+		MIN,
+		MAX
+	}
+
+	/**
+	 * Pool running the parallel build, null to build on the calling thread
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Round the block size to a power of two so that block indices are computed with shifts
+	 */
+	private boolean powerOfTwoBlocks;
+
+	/**
+	 * Print all the intermediate steps of the build
+	 */
+	private boolean verbose;
+
+	/**
+	 * Order of the elements queried by the structure
+	 */
+	private Order order = Order.MIN;
+
+	/**
+	 * Block size of the BlockRMQ, 0 to derive it from the size of the input
+	 */
+	private int blockSize;
+
+	/**
+	 * Scan the blocks at both ends of a HybridRMQ query with the Vector API when it is available
+	 */
+	private boolean vectorScan;
+
+	/**
+	 * Replace the sparse array over the block minima by a BitmaskRMQ over them
+	 */
+	private boolean recursiveTop;
+
+	/**
+	 * Materialise the in-block table of a FischerHeunRMQ block on the first query touching it
+	 */
+	private boolean lazyBlocks;
+
+	/**
+	 * Metrics of the build and the queries, null to record none
+	 */
+	private QueryMetrics metrics;
+
+	/**
+	 * Build the structure on the workers of the given pool. The result is identical to the sequential build.
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 * @return		These options
+	 */
+	public BuildOptions parallel(ForkJoinPool pool)
+	{
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Get the pool running the parallel build
+	 *
+	 * @return		The pool running the build, null to build on the calling thread
+	 */
+	public ForkJoinPool pool()
+	{
+		return this.pool;
+	}
+
+	/**
+	 * Round the block size to the nearest power of two, so that the query kernel finds the block
+	 * of an index with a shift instead of a division
+	 *
+	 * @param powerOfTwoBlocks	True to round the block size to a power of two
+	 * @return					These options
+	 */
+	public BuildOptions powerOfTwoBlocks(boolean powerOfTwoBlocks)
+	{
+		this.powerOfTwoBlocks = powerOfTwoBlocks;
+		return this;
+	}
+
+	/**
+	 * Check if the block size is rounded to a power of two
+	 *
+	 * @return		True if the block size is rounded to a power of two
+	 */
+	public boolean powerOfTwoBlocks()
+	{
+		return this.powerOfTwoBlocks;
+	}
+
+	/**
+	 * Print all the intermediate steps of the build of the structure. The queries are observed through metrics().
+	 *
+	 * @param verbose	True to print the intermediate steps
+	 * @return			These options
+	 */
+	public BuildOptions verbose(boolean verbose)
+	{
+		this.verbose = verbose;
+		return this;
+	}
+
+	/**
+	 * Check if the intermediate steps are printed
+	 *
+	 * @return		True if the intermediate steps are printed
+	 */
+	public boolean verbose()
+	{
+		return this.verbose;
+	}
+
+	/**
+	 * Query the minimum (Order.MIN, the default) or the maximum (Order.MAX) of the ranges
+	 *
+	 * @param order		The order of the elements
+	 * @return			These options
+	 */
+	public BuildOptions order(Order order)
+	{
+		this.order = order;
+		return this;
+	}
+
+	/**
+	 * Get the order of the elements queried by the structure
+	 *
+	 * @return		Order.MIN to query the minimum, Order.MAX to query the maximum
+	 */
+	public Order order()
+	{
+		return this.order;
+	}
+
+	/**
+	 * Use the given block size instead of the one derived from the size of the input, e.g. the one
+	 * chosen by BlockSizeTuner. It is at most 128 for HybridRMQ and 12 for FischerHeunRMQ, whose
+	 * table of the 4^blockSize Cartesian Encodings takes 64 MB at 12.
+	 *
+	 * @param blockSize		The block size, 0 to derive it from the size of the input
+	 * @return				These options
+	 */
+	public BuildOptions blockSize(int blockSize)
+	{
+		if(blockSize<0)
+		{
+			throw new IllegalArgumentException("Block size must not be negative: "+blockSize);
+		}
+		this.blockSize = blockSize;
+		return this;
+	}
+
+	/**
+	 * Get the block size of the BlockRMQ
+	 *
+	 * @return		The block size, 0 if it is derived from the size of the input
+	 */
+	public int blockSize()
+	{
+		return this.blockSize;
+	}
+
+	/**
+	 * Scan the blocks at both ends of a HybridRMQ query with SIMD instructions of the jdk.incubator.vector
+	 * API, falling back to the scalar scan when the module is not added with --add-modules. Unless a
+	 * block size is given, the blocks are then larger, so the sparse array is smaller.
+	 *
+	 * @param vectorScan	True to scan with the Vector API
+	 * @return				These options
+	 */
+	public BuildOptions vectorScan(boolean vectorScan)
+	{
+		this.vectorScan = vectorScan;
+		return this;
+	}
+
+	/**
+	 * Check if the blocks are scanned with the Vector API
+	 *
+	 * @return		True if the blocks are scanned with the Vector API
+	 */
+	public boolean vectorScan()
+	{
+		return this.vectorScan;
+	}
+
+	/**
+	 * Build the top level of a HybridRMQ or FischerHeunRMQ as a BitmaskRMQ over the block minima, i.e. block
+	 * minima of the block minima with a sparse array only over the minima of 64 blocks, instead of the full
+	 * sparse array. It takes about 8 bytes per block instead of 4*log2(blocks), and a query crossing
+	 * blocks makes 2 or 3 more lookups.
+	 *
+	 * @param recursiveTop	True for the near-linear memory top level, false for the fastest one
+	 * @return				These options
+	 */
+	public BuildOptions recursiveTop(boolean recursiveTop)
+	{
+		this.recursiveTop = recursiveTop;
+		return this;
+	}
+
+	/**
+	 * Check if the top level is a BitmaskRMQ over the block minima
+	 *
+	 * @return		True if the top level is a BitmaskRMQ, false if it is the full sparse array
+	 */
+	public boolean recursiveTop()
+	{
+		return this.recursiveTop;
+	}
+
+	/**
+	 * Build only the minArray and the top level of a FischerHeunRMQ up front, and compute the Cartesian
+	 * Encoding and the table of a block the first time a query touches it. The first query comes much
+	 * sooner on a large input and a workload touching few blocks never pays for the others, at the
+	 * cost of one more branch per block lookup and a lock on the first touch of each block.
+	 *
+	 * @param lazyBlocks	True to materialise the blocks on demand, false to materialise them all in the build
+	 * @return				These options
+	 */
+	public BuildOptions lazyBlocks(boolean lazyBlocks)
+	{
+		this.lazyBlocks = lazyBlocks;
+		return this;
+	}
+
+	/**
+	 * Check if the blocks of a FischerHeunRMQ are materialised on demand
+	 *
+	 * @return		True if the blocks are materialised on the first query touching them
+	 */
+	public boolean lazyBlocks()
+	{
+		return this.lazyBlocks;
+	}
+
+	/**
+	 * Record the preprocessing phase timings of a HybridRMQ or FischerHeunRMQ and, when QueryMetrics.ENABLED
+	 * is set, the decomposition branch and the latency of each query(i, j)
+	 *
+	 * @param metrics	The metrics to record into, shared by any number of structures, null to record none
+	 * @return			These options
+	 */
+	public BuildOptions metrics(QueryMetrics metrics)
+	{
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Get the metrics of the build and the queries
+	 *
+	 * @return		The metrics, null if none are recorded
+	 */
+	public QueryMetrics metrics()
+	{
+		return this.metrics;
+	}
+}
@@ -0,0 +1,719 @@
+package sxa190016;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Cached RMQ: Short project 10
+ * 				Bounded cache of the answers of an RMQ structure, for workloads that ask the same ranges
+ * 				over and over, such as dashboards re-asking a handful of windows.
+ *
+ * 				A range [i, j] is packed into one long key, i in the high and j in the low 32 bits, so
+ * 				nothing is boxed. The cache is split into up to 16 segments chosen by the hash of the key,
+ * 				each a chained hash table over primitive arrays with its own lock for the writers. A
+ * 				lookup takes no lock, see Segment, so a hit costs about as much as a few loads from the
+ * 				cache lines of the segment. A miss queries the wrapped structure,
+ * 				which is safe from any thread as the structures are immutable once built, and then
+ * 				inserts the answer under the lock of the segment.
+ * 				With Policy.LRU a full segment evicts a range not asked since the clock hand last passed
+ * 				it, the CLOCK approximation of the least recently used one, which only needs a bit to be
+ * 				set on a hit instead of moving the range in a list under a lock. With Policy.TINY_LFU every
+ * 				lookup is also counted in a small count-min sketch of 4-bit counters, halved every
+ * 				10*capacity lookups so that old popularity fades, and a new range only replaces the
+ * 				clock victim if it was asked more often, so a scan of one-off ranges cannot flush the hot
+ * 				ones, and most of its ranges are rejected without taking the lock.
+ * 				Hits, misses, evictions and rejected admissions are counted in LongAdders and summed on
+ * 				demand. The cache does not see updates of the input array, so clear() must be called
+ * 				after DynamicRMQ.update() or any other change of the answers.
+ */
+public class CachedRMQ implements RangeMinQuery {
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Cached RMQ: Short project 10
+	 * 				Eviction policy of a full segment
+	 */
+	public enum Policy {
+		/**
+		 * Evict a range not asked since the clock hand last passed it, an approximation of the
+		 * least recently used range
+		 */
+		LRU,
+		/**
+		 * Evict the range chosen by LRU only if the new one was asked more often,
+		 * as estimated by a count-min sketch of the recent lookups
+		 */
+		TINY_LFU
+	}
+
+	/**
+	 * Maximum number of segments, a power of two
+	 */
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * Minimum capacity of a segment, so that a small cache keeps an exact recency order
+	 */
+	private static final int MIN_SEGMENT_CAPACITY = 64;
+
+	/**
+	 * Value returned by a segment for a key it does not hold, outside the range of an int
+	 */
+	private static final long MISSING = Long.MIN_VALUE;
+
+	/**
+	 * The structure answering the misses
+	 */
+	private final RangeMinQuery rmq;
+
+	/**
+	 * Eviction policy of the segments
+	 */
+	private final Policy policy;
+
+	/**
+	 * Segments of the cache, selected by the high bits of the hash of a key
+	 */
+	private final Segment [] segments;
+
+	/**
+	 * Number of queries answered by the cache, a LongAdder so that threads sharing the cache
+	 * do not contend on one cache line
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Number of queries answered by the wrapped structure
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Number of ranges evicted to make room for a new one
+	 */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Number of missed ranges not admitted because the range they would evict was asked more often
+	 */
+	private final LongAdder rejections = new LongAdder();
+
+	/**
+	 * Constructor to initialize an LRU cache in front of an RMQ structure
+	 *
+	 * @param rmq		The structure answering the misses
+	 * @param capacity	The number of ranges kept, at least 1
+	 */
+	public CachedRMQ(RangeMinQuery rmq, int capacity)
+	{
+		this(rmq, capacity, Policy.LRU);
+	}
+
+	/**
+	 * Constructor to initialize a cache in front of an RMQ structure
+	 *
+	 * @param rmq		The structure answering the misses
+	 * @param capacity	The number of ranges kept, at least 1, rounded up to a multiple of the number of segments
+	 * @param policy	The eviction policy of a full segment
+	 */
+	public CachedRMQ(RangeMinQuery rmq, int capacity, Policy policy)
+	{
+		if(capacity<1)
+		{
+			throw new IllegalArgumentException("Cache must hold at least one range: "+capacity);
+		}
+		this.rmq = rmq;
+		this.policy = policy;
+		int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, capacity/MIN_SEGMENT_CAPACITY)));
+		this.segments = new Segment [count];
+		for(int s=0; s<count; s++)
+		{
+			this.segments[s] = new Segment((capacity+count-1)/count);
+		}
+	}
+
+	/**
+	 * Pack a range into a key
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		i in the high 32 bits and j in the low 32 bits
+	 */
+	static long key(int i, int j)
+	{
+		return ((long) i<<32)|(j&0xFFFFFFFFL);
+	}
+
+	/**
+	 * Helper method to spread the bits of a key, the finaliser of MurmurHash3
+	 *
+	 * @param key	The packed range
+	 * @return		The hash of the key
+	 */
+	private static long hash(long key)
+	{
+		key ^= key>>>33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key>>>33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		return key^(key>>>33);
+	}
+
+	/**
+	 * Query the minimum element in the range, from the cache if it holds the range
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range, Integer.MAX_VALUE if the range is invalid
+	 */
+	public int query(int i, int j)
+	{
+		if(i<0 || i>j)
+		{
+			//Invalid ranges are not cached
+			return this.rmq.query(i, j);
+		}
+		long key = key(i, j);
+		long hash = hash(key);
+		Segment segment = this.segments[(int) (hash>>>32)&(this.segments.length-1)];
+		long cached = segment.get(key, hash);
+		if(cached!=MISSING)
+		{
+			this.hits.increment();
+			return (int) cached;
+		}
+		this.misses.increment();
+		int result = this.rmq.query(i, j);
+		segment.put(key, hash, result);
+		return result;
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element, always from the wrapped structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		return this.rmq.queryIndex(i, j);
+	}
+
+	/**
+	 * Remove every range from the cache, keeping the counters
+	 */
+	public void clear()
+	{
+		for(Segment segment : this.segments)
+		{
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Get the number of queries answered by the cache
+	 *
+	 * @return		The number of hits
+	 */
+	public long hits()
+	{
+		return this.hits.sum();
+	}
+
+	/**
+	 * Get the number of queries answered by the wrapped structure
+	 *
+	 * @return		The number of misses
+	 */
+	public long misses()
+	{
+		return this.misses.sum();
+	}
+
+	/**
+	 * Get the number of ranges evicted to make room for a new one
+	 *
+	 * @return		The number of evictions
+	 */
+	public long evictions()
+	{
+		return this.evictions.sum();
+	}
+
+	/**
+	 * Get the number of missed ranges not admitted by Policy.TINY_LFU
+	 *
+	 * @return		The number of rejected admissions
+	 */
+	public long rejections()
+	{
+		return this.rejections.sum();
+	}
+
+	/**
+	 * Get the share of the queries answered by the cache
+	 *
+	 * @return		The hit rate in [0, 1], 0 before the first query
+	 */
+	public double hitRate()
+	{
+		long hits = this.hits();
+		long total = hits+this.misses();
+		return total==0?0:(double) hits/total;
+	}
+
+	/**
+	 * Reset the hit, miss, eviction and rejection counters, keeping the cached ranges
+	 */
+	public void resetCounters()
+	{
+		this.hits.reset();
+		this.misses.reset();
+		this.evictions.reset();
+		this.rejections.reset();
+	}
+
+	/**
+	 * Get the bytes used by the wrapped structure and by the segments of the cache
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint inner = this.rmq.memoryFootprint();
+		MemoryFootprint footprint = new MemoryFootprint("CachedRMQ("+inner.structure()+")")
+				.input(inner.inputBytes())
+				.include("", inner)
+				.object("cache", 0, 7)
+				.array("cache segments", this.segments.length, MemoryFootprint.REFERENCE);
+
+		//The base and the cell lock of each LongAdder, without the cells added under contention
+		footprint.object("cache hits", Long.BYTES+Integer.BYTES, 1)
+				.object("cache misses", Long.BYTES+Integer.BYTES, 1)
+				.object("cache evictions", Long.BYTES+Integer.BYTES, 1)
+				.object("cache rejections", Long.BYTES+Integer.BYTES, 1);
+		for(Segment segment : this.segments)
+		{
+			segment.footprint(footprint);
+		}
+		return footprint;
+	}
+
+	/**
+	 * Report the policy, the capacity and the counters of the cache
+	 *
+	 * @return		The report
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("%s cache of %d ranges in %d segments: %d hits, %d misses (%.1f%% hits), %d evictions, %d rejected",
+				this.policy, this.segments.length*this.segments[0].capacity, this.segments.length,
+				this.hits(), this.misses(), 100*this.hitRate(), this.evictions(), this.rejections());
+	}
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Cached RMQ: Short project 10
+	 * 				One segment of the cache: a chained hash table of the ranges over primitive arrays,
+	 * 				a referenced bit per slot for the CLOCK eviction and, for Policy.TINY_LFU, a frequency
+	 * 				sketch. Inserts and evictions hold the write lock of the segment. A lookup holds no
+	 * 				lock: it reads the table under an optimistic stamp of the StampedLock and only falls
+	 * 				back to the read lock if a writer ran meanwhile. A locked instruction would wait for
+	 * 				every outstanding load, including the cache misses of the queries before it, so taking
+	 * 				a lock on every lookup halved the throughput of a loop of queries that miss the cache.
+	 * 				The referenced bits and the sketch counters are written without a lock, as a lost
+	 * 				update only makes the eviction slightly less accurate.
+	 */
+	private final class Segment {
+		/**
+		 * Number of ranges the segment holds
+		 */
+		private final int capacity;
+
+		/**
+		 * Packed range of each slot
+		 */
+		private final long [] keys;
+
+		/**
+		 * Minimum element of the range of each slot
+		 */
+		private final int [] values;
+
+		/**
+		 * Next slot in the same bucket, -1 at the end of the chain
+		 */
+		private final int [] chain;
+
+		/**
+		 * First slot of each bucket, -1 if the bucket is empty
+		 */
+		private final int [] buckets;
+
+		/**
+		 * 1 if the range of the slot was asked since the clock hand last passed it
+		 */
+		private final byte [] referenced;
+
+		/**
+		 * Count-min sketch of the lookups, 4 counters per key, null for Policy.LRU
+		 */
+		private final byte [] sketch;
+
+		/**
+		 * Number of lookups after which the counters of the sketch are halved
+		 */
+		private final int sampleSize;
+
+		/**
+		 * Lookups counted in the sketch since it was last halved
+		 */
+		private int additions;
+
+		/**
+		 * Next slot examined for eviction
+		 */
+		private int hand;
+
+		/**
+		 * Number of slots in use
+		 */
+		private int size;
+
+		/**
+		 * Lock of the writers, validating the optimistic reads of the lookups
+		 */
+		private final StampedLock lock = new StampedLock();
+
+		/**
+		 * Constructor to initialize an empty segment
+		 *
+		 * @param capacity	The number of ranges the segment holds
+		 */
+		private Segment(int capacity)
+		{
+			this.capacity = capacity;
+			this.keys = new long [capacity];
+			this.values = new int [capacity];
+			this.chain = new int [capacity];
+			this.referenced = new byte [capacity];
+			this.buckets = new int [tableSize(capacity)];
+			Arrays.fill(this.buckets, -1);
+			this.sketch = CachedRMQ.this.policy==Policy.TINY_LFU?new byte [tableSize(2*capacity)]:null;
+			this.sampleSize = 10*capacity;
+		}
+
+		/**
+		 * Helper method to size a table as the power of two of at least twice a number of entries
+		 *
+		 * @param entries	The number of entries
+		 * @return			The size of the table
+		 */
+		private int tableSize(int entries)
+		{
+			return Integer.highestOneBit(Math.max(2, 2*entries-1))<<1;
+		}
+
+		/**
+		 * Look up a range, marking it as referenced and counting the lookup in the sketch
+		 *
+		 * @param key	The packed range
+		 * @param hash	The hash of the key
+		 * @return		The minimum element of the range, MISSING if the segment does not hold it
+		 */
+		private long get(long key, long hash)
+		{
+			long stamp = this.lock.tryOptimisticRead();
+			int slot = this.find(key, hash);
+			long value = slot<0?MISSING:this.values[slot];
+			if(!this.lock.validate(stamp))
+			{
+				//A writer changed the table during the lookup
+				stamp = this.lock.readLock();
+				try
+				{
+					slot = this.find(key, hash);
+					value = slot<0?MISSING:this.values[slot];
+				}
+				finally
+				{
+					this.lock.unlockRead(stamp);
+				}
+			}
+			if(slot>=0 && this.referenced[slot]==0)
+			{
+				this.referenced[slot] = 1;
+			}
+			if(this.sketch!=null)
+			{
+				this.increment(hash);
+			}
+			return value;
+		}
+
+		/**
+		 * Insert the answer of a missed range, evicting a range if the segment is full and the
+		 * policy admits the new one. Policy.TINY_LFU admits a range into a full segment only if
+		 * it was asked more often than the range it would evict, and checks it first without the
+		 * lock against the range under the clock hand, the likely victim, so that most of the
+		 * rejected ranges take no lock.
+		 *
+		 * @param key		The packed range
+		 * @param hash		The hash of the key
+		 * @param value		The minimum element of the range
+		 */
+		private void put(long key, long hash, int value)
+		{
+			if(this.sketch!=null && this.size==this.capacity && this.frequency(hash)<=this.frequency(hash(this.keys[this.hand])))
+			{
+				//Reject without the lock a range asked less often than the next range under the clock hand
+				CachedRMQ.this.rejections.increment();
+				return;
+			}
+			long stamp = this.lock.writeLock();
+			try
+			{
+				if(this.find(key, hash)>=0)
+				{
+					//Another thread inserted it after the lookup
+					return;
+				}
+				int slot;
+				if(this.size<this.capacity)
+				{
+					slot = this.size++;
+				}
+				else
+				{
+					slot = this.victim();
+					long victim = this.keys[slot];
+					if(this.sketch!=null && this.frequency(hash)<=this.frequency(hash(victim)))
+					{
+						CachedRMQ.this.rejections.increment();
+						return;
+					}
+					this.remove(hash(victim), slot);
+					CachedRMQ.this.evictions.increment();
+				}
+				int bucket = (int) hash&(this.buckets.length-1);
+				this.keys[slot] = key;
+				this.values[slot] = value;
+				this.referenced[slot] = 0;
+				this.chain[slot] = this.buckets[bucket];
+				this.buckets[bucket] = slot;
+			}
+			finally
+			{
+				this.lock.unlockWrite(stamp);
+			}
+		}
+
+		/**
+		 * Helper method to find the slot of a range. The walk is bounded, as an optimistic lookup
+		 * may see a chain being relinked by a writer.
+		 *
+		 * @param key	The packed range
+		 * @param hash	The hash of the key
+		 * @return		The slot of the range, -1 if the segment does not hold it
+		 */
+		private int find(long key, long hash)
+		{
+			int slot = this.buckets[(int) hash&(this.buckets.length-1)];
+			for(int steps=0; slot>=0 && steps<this.capacity; slot=this.chain[slot], steps++)
+			{
+				if(this.keys[slot]==key)
+				{
+					return slot;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Helper method to choose the slot to evict with the CLOCK algorithm, an approximation of
+		 * LRU: the hand skips and clears the referenced slots and stops at the first other one
+		 *
+		 * @return		The slot to evict
+		 */
+		private int victim()
+		{
+			for(int steps=0; this.referenced[this.hand]!=0 && steps<this.capacity; steps++)
+			{
+				this.referenced[this.hand] = 0;
+				this.hand = this.hand+1==this.capacity?0:this.hand+1;
+			}
+			int slot = this.hand;
+			this.hand = this.hand+1==this.capacity?0:this.hand+1;
+			return slot;
+		}
+
+		/**
+		 * Helper method to remove a slot from the chain of its bucket
+		 *
+		 * @param hash	The hash of the key of the slot
+		 * @param slot	The slot
+		 */
+		private void remove(long hash, int slot)
+		{
+			int bucket = (int) hash&(this.buckets.length-1);
+			if(this.buckets[bucket]==slot)
+			{
+				this.buckets[bucket] = this.chain[slot];
+				return;
+			}
+			int s = this.buckets[bucket];
+			while(this.chain[s]!=slot)
+			{
+				s = this.chain[s];
+			}
+			this.chain[s] = this.chain[slot];
+		}
+
+		/**
+		 * Helper method to find the position of one of the 4 counters of a key in the sketch, by
+		 * double hashing on the two halves of the hash
+		 *
+		 * @param hash	The hash of the key
+		 * @param row	The counter, in [0, 4)
+		 * @return		The position of the counter
+		 */
+		private int counter(long hash, int row)
+		{
+			return ((int) hash+row*((int) (hash>>>32)|1))&(this.sketch.length-1);
+		}
+
+		/**
+		 * Helper method to count a lookup in the sketch, halving every counter once sampleSize
+		 * lookups were counted
+		 *
+		 * @param hash	The hash of the key
+		 */
+		private void increment(long hash)
+		{
+			for(int row=0; row<4; row++)
+			{
+				int c = this.counter(hash, row);
+				if(this.sketch[c]<15)
+				{
+					this.sketch[c]++;
+				}
+			}
+			if(++this.additions>=this.sampleSize)
+			{
+				this.additions = 0;
+				for(int c=0; c<this.sketch.length; c++)
+				{
+					this.sketch[c] >>= 1;
+				}
+			}
+		}
+
+		/**
+		 * Helper method to estimate the number of recent lookups of a key, the smallest of its counters
+		 *
+		 * @param hash	The hash of the key
+		 * @return		The estimated frequency, at most 15
+		 */
+		private int frequency(long hash)
+		{
+			int min = 15;
+			for(int row=0; row<4; row++)
+			{
+				min = Math.min(min, this.sketch[this.counter(hash, row)]);
+			}
+			return min;
+		}
+
+		/**
+		 * Remove every range from the segment, keeping the sketch
+		 */
+		private void clear()
+		{
+			long stamp = this.lock.writeLock();
+			try
+			{
+				Arrays.fill(this.buckets, -1);
+				Arrays.fill(this.referenced, (byte) 0);
+				this.hand = 0;
+				this.size = 0;
+			}
+			finally
+			{
+				this.lock.unlockWrite(stamp);
+			}
+		}
+
+		/**
+		 * Add the object and the arrays of the segment to a footprint report
+		 *
+		 * @param footprint	The report of the cache
+		 */
+		private void footprint(MemoryFootprint footprint)
+		{
+			footprint.object("cache segments", 5*Integer.BYTES, 8)
+					.array("cache keys", this.keys)
+					.array("cache values", this.values)
+					.array("cache chain", this.chain)
+					.array("cache buckets", this.buckets)
+					.array("cache referenced", this.referenced)
+					.array("cache sketch", this.sketch);
+		}
+	}
+
+	/**
+	 * Main method to compare repeated fixed ranges and a skewed workload with and without the cache
+	 *
+	 * @param args	The binary input file
+	 * @throws Exception	If the input cannot be read
+	 */
+	public static void main(String args []) throws Exception
+	{
+		int [] arr = DatasetLoader.load(args.length>0?args[0]:"C:\\Users\\shari\\Downloads\\128M.bin");
+		int n = arr.length;
+		FischerHeunRMQ fh = new FischerHeunRMQ(arr);
+
+		//1000 hot ranges asked 9 times in 10, any other range once in 10
+		Random rand = new Random(42);
+		int [] lo = new int [100000];
+		int [] hi = new int [100000];
+		for(int x=0; x<lo.length; x++)
+		{
+			Random r = rand.nextInt(10)==0?rand:new Random(rand.nextInt(1000));
+			int i = r.nextInt(n);
+			int j = r.nextInt(n);
+			lo[x] = Math.min(i, j);
+			hi[x] = Math.max(i, j);
+		}
+
+		Timer t = new Timer();
+		for(RangeMinQuery rmq : new RangeMinQuery [] {fh, new CachedRMQ(fh, 4096, Policy.LRU), new CachedRMQ(fh, 4096, Policy.TINY_LFU)})
+		{
+			IntUnaryOperator skewed = x -> rmq.query(lo[x], hi[x]);
+			t.warmUp(lo.length, skewed);
+			t.sample(lo.length, skewed);
+			System.out.println(rmq.getClass().getSimpleName()+" skewed: "+t.summary());
+
+			//The 10%, 20%, ... 100% ranges centered in the array, as in the main of FischerHeunRMQ
+			for(int p=10; p<=100; p+=10)
+			{
+				int i = n/100*(50-p/2);
+				int j = p==100?n-1:n/100*(50+p/2);
+				IntUnaryOperator fixed = x -> rmq.query(i, j);
+				t.warmUp(100000, fixed);
+				t.sample(100000, fixed);
+				System.out.println(p+"% : "+t.summary());
+			}
+			if(rmq instanceof CachedRMQ)
+			{
+				System.out.println(rmq);
+			}
+		}
+	}
+}
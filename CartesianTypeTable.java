@@ -0,0 +1,334 @@
+package sxa190016;
+
+import java.util.Arrays;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Cartesian Type Table: Short project 10
+ * 				Fully-Preprocessed in-block tables of all the Cartesian Encodings found in an
+ * 				input array, packed into one contiguous byte array.
+ *
+ * 				The table of an encoding is a triangle of blockSize*(blockSize+1)/2 bytes. The entry
+ * 				for the in-block range [i, i+j] is at offset + i*blockSize - i*(i-1)/2 + j and holds
+ * 				the position of the minimum relative to the start of the block, so every in-block
+ * 				query is a single indexed load once the offset of the block is known.
+ */
+final class CartesianTypeTable {
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Cartesian Type Table: Short project 10
+	 * 				Order of the elements of the block being materialised, so that the tables of
+	 * 				int, long and double blocks are filled by the same code
+	 */
+	@FunctionalInterface
+	interface Less {
+		/**
+		 * Compare two elements of the input array
+		 *
+		 * @param a		The index of the first element
+		 * @param b		The index of the second element
+		 * @return		True if the first element is strictly smaller than the second one
+		 */
+		boolean less(int a, int b);
+	}
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * Number of bytes in the table of one Cartesian Encoding
+	 */
+	private final int tableSize;
+
+	/**
+	 * Cartesian Encoding to table offset mapping, -1 if the table is not materialised
+	 */
+	private final int [] typeToOffset;
+
+	/**
+	 * Tables of all the materialised Cartesian Encodings
+	 */
+	private byte [] tables;
+
+	/**
+	 * Number of materialised Cartesian Encodings
+	 */
+	private int count;
+
+	/**
+	 * Constructor to initialize an empty table
+	 *
+	 * @param blockSize	The block size of the BlockRMQ, at most BlockLayout.MAX_FISCHER_HEUN_BLOCK_SIZE
+	 * @param blocks	The number of blocks in the input array
+	 */
+	CartesianTypeTable(int blockSize, int blocks)
+	{
+		if(blockSize<1 || blockSize>BlockLayout.MAX_FISCHER_HEUN_BLOCK_SIZE)
+		{
+			throw new IllegalArgumentException("Block size must be between 1 and "+BlockLayout.MAX_FISCHER_HEUN_BLOCK_SIZE+": "+blockSize);
+		}
+		this.blockSize = blockSize;
+		this.tableSize = blockSize*(blockSize+1)/2;
+		this.typeToOffset = new int [1<<(2*blockSize)];
+		Arrays.fill(this.typeToOffset, -1);
+
+		//At most Catalan(blockSize) full blocks are distinct, plus the shorter last block
+		this.tables = new byte [(int) Math.min(catalan(blockSize)+1, blocks)*this.tableSize];
+	}
+
+	/**
+	 * Helper method to calculate the n-th Catalan number
+	 *
+	 * @param n		The index of the Catalan number
+	 * @return		The n-th Catalan number
+	 */
+	static long catalan(int n)
+	{
+		long c = 1;
+		for(int i=0; i<n; i++)
+		{
+			c = c*2*(2*i+1)/(i+2);
+		}
+		return c;
+	}
+
+	/**
+	 * Get the Cartesian Encoding for array elements in a given range as an int, without creating
+	 * the Cartesian tree. Each push on the right spine of the tree appends a 1 bit and each pop a 0 bit.
+	 *
+	 * @param arr	The input array
+	 * @param start	The start index of the block RMQ
+	 * @param end	The last index of the block
+	 * @param stack	Scratch stack of at least end-start+1 elements holding the right spine of the tree
+	 * @return		The Cartesian Encoding for array elements in the given range
+	 */
+	static int encode(int [] arr, int start, int end, int [] stack)
+	{
+		return encode(arr, start, end, stack, 0);
+	}
+
+	/**
+	 * Get the Cartesian Encoding for array elements in a given range in the order of value^mask, so
+	 * that a mask of -1 gives the encoding of the Cartesian tree of the maximum
+	 *
+	 * @param arr	The input array
+	 * @param start	The start index of the block RMQ
+	 * @param end	The last index of the block
+	 * @param stack	Scratch stack of at least end-start+1 elements holding the right spine of the tree
+	 * @param mask	0 for the minimum, -1 for the maximum
+	 * @return		The Cartesian Encoding for array elements in the given range
+	 */
+	static int encode(int [] arr, int start, int end, int [] stack, int mask)
+	{
+		int code = 0;
+		int top = 0;
+		for(int i=start; i<=end; i++)
+		{
+			int val = arr[i]^mask;
+			while(top>0 && stack[top-1]>val)
+			{
+				top--;
+				code <<= 1;
+			}
+			stack[top++] = val;
+			code = (code<<1)|1;
+		}
+		//Pop the remaining nodes of the right spine
+		return code<<top;
+	}
+
+	/**
+	 * Get the Cartesian Encoding for long array elements in a given range as an int
+	 *
+	 * @param arr	The input array
+	 * @param start	The start index of the block RMQ
+	 * @param end	The last index of the block
+	 * @param stack	Scratch stack of at least end-start+1 elements holding the right spine of the tree
+	 * @return		The Cartesian Encoding for array elements in the given range
+	 */
+	static int encode(long [] arr, int start, int end, long [] stack)
+	{
+		int code = 0;
+		int top = 0;
+		for(int i=start; i<=end; i++)
+		{
+			long val = arr[i];
+			while(top>0 && stack[top-1]>val)
+			{
+				top--;
+				code <<= 1;
+			}
+			stack[top++] = val;
+			code = (code<<1)|1;
+		}
+		return code<<top;
+	}
+
+	/**
+	 * Get the Cartesian Encoding for double array elements in a given range as an int, with NaN
+	 * greater than every number as in DoubleHybridRMQ.less()
+	 *
+	 * @param arr	The input array
+	 * @param start	The start index of the block RMQ
+	 * @param end	The last index of the block
+	 * @param stack	Scratch stack of at least end-start+1 elements holding the right spine of the tree
+	 * @return		The Cartesian Encoding for array elements in the given range
+	 */
+	static int encode(double [] arr, int start, int end, double [] stack)
+	{
+		int code = 0;
+		int top = 0;
+		for(int i=start; i<=end; i++)
+		{
+			double val = arr[i];
+			while(top>0 && DoubleHybridRMQ.less(val, stack[top-1]))
+			{
+				top--;
+				code <<= 1;
+			}
+			stack[top++] = val;
+			code = (code<<1)|1;
+		}
+		return code<<top;
+	}
+
+	/**
+	 * Get the offset of the table of a block, materialising it if its Cartesian Encoding is new
+	 *
+	 * @param arr	The input array
+	 * @param start	The start index of the block
+	 * @param end	The last index of the block
+	 * @param stack	Scratch stack of at least end-start+1 elements
+	 * @return		The offset of the table of the block in tables()
+	 */
+	int offsetOf(int [] arr, int start, int end, int [] stack)
+	{
+		return this.offsetOf(encode(arr, start, end, stack), arr, start, end);
+	}
+
+	/**
+	 * Get the offset of the table of a block whose Cartesian Encoding is already known,
+	 * materialising the table if the encoding is new
+	 *
+	 * @param code	The Cartesian Encoding of the block
+	 * @param arr	The input array
+	 * @param start	The start index of the block
+	 * @param end	The last index of the block
+	 * @return		The offset of the table of the block in tables()
+	 */
+	int offsetOf(int code, int [] arr, int start, int end)
+	{
+		return this.offsetOf(code, (a, b) -> arr[a]<arr[b], start, end);
+	}
+
+	/**
+	 * Get the offset of the table of a block of any element type whose Cartesian Encoding is
+	 * already known, materialising the table if the encoding is new
+	 *
+	 * @param code	The Cartesian Encoding of the block
+	 * @param less	The order of the elements of the input array
+	 * @param start	The start index of the block
+	 * @param end	The last index of the block
+	 * @return		The offset of the table of the block in tables()
+	 */
+	int offsetOf(int code, Less less, int start, int end)
+	{
+		int offset = this.typeToOffset[code];
+		if(offset<0)
+		{
+			offset = this.count*this.tableSize;
+			if(offset+this.tableSize>this.tables.length)
+			{
+				this.tables = Arrays.copyOf(this.tables, Math.max(2*this.tables.length, offset+this.tableSize));
+			}
+			this.fill(less, start, end, offset);
+			this.typeToOffset[code] = offset;
+			this.count++;
+		}
+		return offset;
+	}
+
+	/**
+	 * Helper method to calculate the Fully-Preprocessed table of a block at the given offset
+	 *
+	 * @param less		The order of the elements of the input array
+	 * @param start		The start index of the block
+	 * @param end		The last index of the block
+	 * @param offset	The offset of the table in tables
+	 */
+	private void fill(Less less, int start, int end, int offset)
+	{
+		for(int i=0, row=offset; i<=end-start; row+=this.blockSize-i, i++)
+		{
+			int minIndex = i;
+			this.tables[row] = (byte) i;
+			for(int j=1; j<=end-start-i; j++)
+			{
+				if(less.less(start+i+j, start+minIndex))
+				{
+					minIndex = i+j;
+				}
+				this.tables[row+j] = (byte) minIndex;
+			}
+		}
+	}
+
+	/**
+	 * Get the offset of the row of an in-block start index in a table
+	 *
+	 * @param i		The start index of the range relative to the block
+	 * @return		The offset of the row relative to the offset of the table
+	 */
+	int row(int i)
+	{
+		return i*this.blockSize-i*(i-1)/2;
+	}
+
+	/**
+	 * Get the tables of all the materialised Cartesian Encodings
+	 *
+	 * @return		The packed tables
+	 */
+	byte [] tables()
+	{
+		return this.tables;
+	}
+
+	/**
+	 * Get the number of bytes in the table of one Cartesian Encoding
+	 *
+	 * @return		The size of one table
+	 */
+	int tableSize()
+	{
+		return this.tableSize;
+	}
+
+	/**
+	 * Get the number of materialised Cartesian Encodings
+	 *
+	 * @return		The number of distinct Cartesian Encodings found so far
+	 */
+	int count()
+	{
+		return this.count;
+	}
+
+	/**
+	 * Add the table object, the encoding to offset mapping and the packed tables, as the
+	 * fullPreProcessArr of the structure, to a footprint report with the number of materialised types
+	 *
+	 * @param footprint	The report of the structure owning the table
+	 */
+	void footprint(MemoryFootprint footprint)
+	{
+		footprint.object("typeTable", 3*Integer.BYTES, 2)
+				.array("typeToOffset", this.typeToOffset)
+				.array("fullPreProcessArr", this.tables)
+				.cartesianTypes(this.count, this.blockSize);
+	}
+}
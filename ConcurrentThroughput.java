@@ -0,0 +1,229 @@
+package sxa190016;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Concurrent Throughput: Short project 10
+ * 				Measures the query throughput of one shared RMQ structure read by N threads at once,
+ * 				for N = 1, 2, 4, ... up to the number of available processors, on platform threads
+ * 				and, when the running JVM provides them, on virtual threads.
+ *
+ * 				Every reader answers its own precomputed random ranges for a fixed duration, so the
+ * 				reported queries/sec and the scaling against one reader show how many cores a
+ * 				fleet needs for a given query rate.
+ */
+public class ConcurrentThroughput {
+	/**
+	 * Number of precomputed ranges per reader, a power of two
+	 */
+	private static final int QUERIES = 1<<16;
+
+	/**
+	 * Shared structure queried by all the readers
+	 */
+	private final RangeMinQuery rmq;
+
+	/**
+	 * Size of the input array of the structure
+	 */
+	private final int n;
+
+	/**
+	 * XOR of all the answers of the last run, which keeps the JIT from dropping the queries
+	 */
+	private int checksum;
+
+	/**
+	 * Constructor to initialize the harness
+	 *
+	 * @param rmq	The structure shared by all the readers
+	 * @param n		The size of the input array of the structure
+	 */
+	public ConcurrentThroughput(RangeMinQuery rmq, int n)
+	{
+		this.rmq = rmq;
+		this.n = n;
+	}
+
+	/**
+	 * Run the given number of readers against the shared structure
+	 *
+	 * @param executor	The executor running the readers, with at least the given number of threads
+	 * @param readers	The number of reader threads
+	 * @param millis	The duration of the measurement in milliseconds
+	 * @return			The number of queries answered per second by all the readers together
+	 * @throws Exception	If a reader fails
+	 */
+	public double run(ExecutorService executor, int readers, long millis) throws Exception
+	{
+		CountDownLatch ready = new CountDownLatch(readers);
+		CountDownLatch go = new CountDownLatch(1);
+		List<Future<long []>> results = new ArrayList<>(readers);
+		for(int r=0; r<readers; r++)
+		{
+			long seed = r;
+			results.add(executor.submit(() -> this.read(seed, ready, go, millis)));
+		}
+		ready.await();
+		go.countDown();
+
+		//Sum up the queries and keep the longest reader so that stragglers are not overcounted
+		long queries = 0;
+		long nanos = 1;
+		int checksum = 0;
+		for(Future<long []> f : results)
+		{
+			long [] res = f.get();
+			queries += res[0];
+			nanos = Math.max(nanos, res[1]);
+			checksum ^= (int) res[2];
+		}
+		this.checksum = checksum;
+		return queries*1e9/nanos;
+	}
+
+	/**
+	 * Helper method to answer random ranges until the given duration has elapsed
+	 *
+	 * @param seed		The seed of the random ranges of the reader
+	 * @param ready		The latch counted down once the reader is ready
+	 * @param go		The latch starting all the readers at once
+	 * @param millis	The duration of the measurement in milliseconds
+	 * @return			The number of queries answered, the elapsed nanoseconds and the XOR of the answers
+	 * @throws InterruptedException	If the reader is interrupted while waiting to start
+	 */
+	private long [] read(long seed, CountDownLatch ready, CountDownLatch go, long millis) throws InterruptedException
+	{
+		Random rand = new Random(seed);
+		int [] lo = new int [QUERIES];
+		int [] hi = new int [QUERIES];
+		for(int x=0; x<QUERIES; x++)
+		{
+			int i = rand.nextInt(this.n);
+			int j = rand.nextInt(this.n);
+			lo[x] = Math.min(i, j);
+			hi[x] = Math.max(i, j);
+		}
+		ready.countDown();
+		go.await();
+
+		//Check the clock once per 1024 queries so that the timer does not dominate short queries
+		long start = System.nanoTime();
+		long deadline = start+TimeUnit.MILLISECONDS.toNanos(millis);
+		long queries = 0;
+		int sink = 0;
+		long now;
+		do
+		{
+			for(int x=0; x<1024; x++, queries++)
+			{
+				int c = (int) queries&(QUERIES-1);
+				sink ^= this.rmq.query(lo[c], hi[c]);
+			}
+			now = System.nanoTime();
+		}
+		while(now<deadline);
+		return new long [] {queries, now-start, sink};
+	}
+
+	/**
+	 * Get the XOR of all the answers of the last run
+	 *
+	 * @return		The XOR of the answers of all the readers
+	 */
+	public int checksum()
+	{
+		return this.checksum;
+	}
+
+	/**
+	 * Helper method to create an executor starting one virtual thread per task
+	 *
+	 * @return		The executor, null if the running JVM has no virtual threads
+	 */
+	static ExecutorService virtualThreads()
+	{
+		//Looked up reflectively so that the harness still compiles and runs on JVMs without virtual threads
+		try
+		{
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		}
+		catch(ReflectiveOperationException | UnsupportedOperationException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Helper method to report the throughput of 1, 2, 4, ... readers up to the number of processors
+	 *
+	 * @param kind		The kind of threads being measured
+	 * @param executor	The executor running the readers
+	 * @param millis	The duration of each measurement in milliseconds
+	 * @throws Exception	If a reader fails
+	 */
+	private void report(String kind, ExecutorService executor, long millis) throws Exception
+	{
+		int cores = Runtime.getRuntime().availableProcessors();
+		double base = 0;
+		for(int readers=1; ; readers = Math.min(2*readers, cores))
+		{
+			double qps = this.run(executor, readers, millis);
+			if(readers==1)
+			{
+				base = qps;
+			}
+			System.out.printf("%s threads: %3d  queries/sec: %,14.0f  scaling: %5.2fx  checksum: %08x%n", kind, readers, qps, qps/base, this.checksum);
+			if(readers==cores)
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Main method to measure the throughput of a shared HybridRMQ or FischerHeunRMQ
+	 *
+	 * @param args	The binary input file, the engine (HybridRMQ or FischerHeunRMQ) and the duration of each measurement in milliseconds
+	 * @throws Exception	If the input cannot be read or a reader fails
+	 */
+	public static void main(String args []) throws Exception
+	{
+		int [] arr = DatasetLoader.load(args.length>0?args[0]:"C:\\Users\\shari\\Downloads\\128M.bin");
+		String engine = args.length>1?args[1]:"FischerHeunRMQ";
+		long millis = args.length>2?Long.parseLong(args[2]):2000;
+
+		//Build once on this thread, the final fields publish the structure safely to the readers
+		RangeMinQuery rmq = engine.equals("HybridRMQ")?new HybridRMQ(arr):new FischerHeunRMQ(arr);
+		ConcurrentThroughput ct = new ConcurrentThroughput(rmq, arr.length);
+		System.out.println(engine+" n: "+arr.length+" cores: "+Runtime.getRuntime().availableProcessors());
+
+		//Warm up the query path before measuring
+		ExecutorService platform = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		ct.run(platform, 1, millis);
+		ct.report("platform", platform, millis);
+		platform.shutdown();
+
+		ExecutorService virtual = virtualThreads();
+		if(virtual==null)
+		{
+			System.out.println("virtual threads: not available on Java "+System.getProperty("java.version"));
+		}
+		else
+		{
+			ct.report("virtual ", virtual, millis);
+			virtual.shutdown();
+		}
+	}
+}
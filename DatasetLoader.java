@@ -0,0 +1,213 @@
+package sxa190016;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Dataset Loader: Short project 10
+ * 				Loads the input arrays from little-endian binary int files through a memory
+ * 				mapping, and converts the whitespace separated text files to that format.
+ */
+public class DatasetLoader {
+	/**
+	 * Size of the buffer used while converting or writing a file
+	 */
+	static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Memory-map a little-endian binary int file
+	 *
+	 * @param path			The path of the binary file
+	 * @return				A read-only view of the ints in the file
+	 * @throws IOException	If the file cannot be mapped or is larger than 2^31-1 ints
+	 */
+	public static IntBuffer map(String path) throws IOException
+	{
+		try(FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+		{
+			long size = ch.size();
+			if(size%Integer.BYTES!=0 || size/Integer.BYTES>Integer.MAX_VALUE)
+			{
+				throw new IOException("Not a binary int file of a supported size: "+path);
+			}
+			//The mapping stays valid after the channel is closed
+			return ch.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+	}
+
+	/**
+	 * Load a little-endian binary int file into an array that can be passed to the RMQ constructors
+	 *
+	 * @param path			The path of the binary file
+	 * @return				The array of ints in the file
+	 * @throws IOException	If the file cannot be mapped
+	 */
+	public static int [] load(String path) throws IOException
+	{
+		IntBuffer buf = map(path);
+		int [] arr = new int [buf.remaining()];
+		buf.get(arr);
+		return arr;
+	}
+
+	/**
+	 * Convert a text file of whitespace separated integers into a little-endian binary int file
+	 *
+	 * @param textPath		The path of the text file
+	 * @param binPath		The path of the binary file to be written
+	 * @return				The number of integers converted
+	 * @throws IOException	If a file cannot be read or written, or the text is not a list of integers
+	 */
+	public static long convert(String textPath, String binPath) throws IOException
+	{
+		Path out = Paths.get(binPath);
+		long count = 0;
+		try(InputStream in = new FileInputStream(textPath);
+				FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+			//Read the text a chunk at a time and parse it from the array, an integer may span two chunks
+			byte [] chunk = new byte [BUFFER_SIZE];
+			boolean sign = false, digits = false, negative = false;
+			long val = 0;
+			int len;
+			while((len = in.read(chunk))!=-1)
+			{
+				for(int i=0; i<len; i++)
+				{
+					int c = chunk[i] & 0xFF;
+					if(c>='0' && c<='9')
+					{
+						val = val*10+(c-'0');
+						if(val>Integer.MAX_VALUE+1L)
+						{
+							throw new IOException("Integer out of range at position "+count+" in "+textPath);
+						}
+						digits = true;
+						continue;
+					}
+					if(sign && !digits)
+					{
+						throw new IOException("Invalid integer at position "+count+" in "+textPath);
+					}
+
+					//Any other character ends the integer being parsed
+					if(digits)
+					{
+						putInt(ch, buf, negative?-val:val, count++, textPath);
+						sign = digits = negative = false;
+						val = 0;
+					}
+					if(c=='-' || c=='+')
+					{
+						sign = true;
+						negative = c=='-';
+					}
+					else if(!Character.isWhitespace(c))
+					{
+						throw new IOException("Invalid integer at position "+count+" in "+textPath);
+					}
+				}
+			}
+			if(sign && !digits)
+			{
+				throw new IOException("Invalid integer at position "+count+" in "+textPath);
+			}
+			if(digits)
+			{
+				putInt(ch, buf, negative?-val:val, count++, textPath);
+			}
+			flush(ch, buf);
+		}
+		return count;
+	}
+
+	/**
+	 * Helper method to check that a parsed value is an int and append it to the buffer
+	 *
+	 * @param ch			The channel the buffer is flushed to when full
+	 * @param buf			The little-endian buffer used to stage the ints
+	 * @param val			The parsed value
+	 * @param position		The index of the value in the text file
+	 * @param textPath		The path of the text file
+	 * @throws IOException	If the value is out of range or the channel cannot be written
+	 */
+	private static void putInt(FileChannel ch, ByteBuffer buf, long val, long position, String textPath) throws IOException
+	{
+		if(val<Integer.MIN_VALUE || val>Integer.MAX_VALUE)
+		{
+			throw new IOException("Integer out of range at position "+position+" in "+textPath);
+		}
+		if(!buf.hasRemaining())
+		{
+			flush(ch, buf);
+		}
+		buf.putInt((int) val);
+	}
+
+	/**
+	 * Helper method to write an int array to a channel in little-endian order through a buffer
+	 *
+	 * @param ch			The channel to be written
+	 * @param buf			The little-endian buffer used to stage the ints
+	 * @param arr			The array to be written
+	 * @throws IOException	If the channel cannot be written
+	 */
+	static void writeInts(FileChannel ch, ByteBuffer buf, int [] arr) throws IOException
+	{
+		for(int x : arr)
+		{
+			if(buf.remaining()<Integer.BYTES)
+			{
+				flush(ch, buf);
+			}
+			buf.putInt(x);
+		}
+	}
+
+	/**
+	 * Helper method to write the contents of a buffer to a channel and clear the buffer
+	 *
+	 * @param ch			The channel to be written
+	 * @param buf			The buffer to be written
+	 * @throws IOException	If the channel cannot be written
+	 */
+	static void flush(FileChannel ch, ByteBuffer buf) throws IOException
+	{
+		buf.flip();
+		while(buf.hasRemaining())
+		{
+			ch.write(buf);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * Convert a text file to the binary format
+	 *
+	 * @param args			The path of the text file and the path of the binary file
+	 * @throws IOException	If a file cannot be read or written
+	 */
+	public static void main(String args []) throws IOException
+	{
+		if(args.length!=2)
+		{
+			System.out.println("Usage: java sxa190016.DatasetLoader <input.txt> <output.bin>");
+			return;
+		}
+		long t = System.currentTimeMillis();
+		long count = convert(args[0], args[1]);
+		System.out.println("Converted "+count+" integers in "+(System.currentTimeMillis()-t)+" msec.");
+	}
+}
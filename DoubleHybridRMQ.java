@@ -0,0 +1,311 @@
+package sxa190016;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Double Hybrid 1 RMQ: Short project 10
+ * 				Hybrid 1 RMQ structure for Minimum Range Query over a double array,
+ * 				with BlockRMQ at the bottom and Block-Minima RMQ at the top.
+ * 				It uses the block decomposition of HybridRMQ with the values kept as primitive doubles.
+ * 				NaN is greater than every number, so the minimum of a range is NaN only if all of its
+ * 				elements are NaN, and -0.0 and 0.0 are equal, the leftmost of them being the minimum.
+ * 				The structure is immutable once constructed, as long as the input array is not modified.
+ */
+public class DoubleHybridRMQ {
+	/**
+	 * Store the size of the input array.
+	 */
+	private final int n;
+
+	/**
+	 * The input array
+	 */
+	private final double [] arr;
+
+	/**
+	 * The minimum array populated with the minimum of each block level RMQ
+	 */
+	private final double [] minArr;
+
+	/**
+	 * Position of the leftmost minimum of each block relative to the start of the block
+	 */
+	private final byte [] minPosArr;
+
+	/**
+	 * Sparse array to allow constant time search, holding the index of the block with the leftmost minimum
+	 */
+	private final int [][] sparseArr;
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	private final int blockShift;
+
+	/**
+	 * Constructor to initialize the DoubleHybridRMQ class
+	 *
+	 * @param arr	The input array to be queried
+	 */
+	public DoubleHybridRMQ(double [] arr)
+	{
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the DoubleHybridRMQ class with build options
+	 *
+	 * @param arr		The input array to be queried
+	 * @param options	The build options, e.g. a pool to build in parallel
+	 */
+	public DoubleHybridRMQ(double [] arr, BuildOptions options)
+	{
+		this.n = arr.length;
+		this.arr = arr;
+
+		//Set optimal block size to log2(n), rounded to a power of two if requested
+		int blockSize = BlockLayout.hybridBlockSize(Math.max(this.n, 1));
+		this.blockSize = options.powerOfTwoBlocks()?BlockLayout.powerOfTwo(blockSize):blockSize;
+		this.blockShift = BlockLayout.shift(this.blockSize);
+		this.minArr = new double [this.n>0?BlockLayout.blocks(this.n, this.blockSize):0];
+		this.minPosArr = new byte [this.minArr.length];
+		this.sparseArr = new int [this.n>0?BlockLayout.levels(this.minArr.length):0][];
+		if(this.n>0)
+		{
+			//Fill the minArray containing the minimum elements of each block
+			this.fillMinArr(options.pool());
+
+			//Fill the Sparse Table in a DP fashion
+			this.fillSparseArr(options.pool());
+		}
+	}
+
+	/**
+	 * Helper method to find the minimum element of each block and populate the minArray
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillMinArr(ForkJoinPool pool)
+	{
+		ParallelBuild.forRange(pool, 0, this.minArr.length, (from, to) -> {
+			for(int i=from; i<to; i++)
+			{
+				int start = i*this.blockSize;
+				int minIndex = this.minIndex(start, Math.min(start+this.blockSize, this.n));
+				this.minArr[i] = this.arr[minIndex];
+				this.minPosArr[i] = (byte) (minIndex-start);
+			}
+		});
+	}
+
+	/**
+	 * Helper method to fill the sparseArray in a DP fashion
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillSparseArr(ForkJoinPool pool)
+	{
+		int [] first = new int [this.minArr.length];
+		ParallelBuild.forRange(pool, 0, first.length, (from, to) -> {
+			for(int j=from; j<to; j++)
+			{
+				first[j] = j;
+			}
+		});
+		this.sparseArr[0] = first;
+		for(int i=1; i<this.sparseArr.length; i++)
+		{
+			this.sparseArr[i] = new int [BlockLayout.levelSize(this.minArr.length, i)];
+			int [] prev = this.sparseArr[i-1];
+			int [] level = this.sparseArr[i];
+			int half = 1<<(i-1);
+			ParallelBuild.forRange(pool, 0, level.length, (from, to) -> {
+				for(int j=from; j<to; j++)
+				{
+					int left = prev[j];
+					int right = prev[Math.min(j+half, prev.length-1)];
+					level[j] = less(this.minArr[right], this.minArr[left])?right:left;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time
+	 *
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public int queryMinRMQIndex(int i, int j)
+	{
+		int k = BlockLayout.log2(j-i+1);
+		int left = this.sparseArr[k][i];
+		int right = this.sparseArr[k][j-(1<<k)+1];
+		return less(this.minArr[right], this.minArr[left])?right:left;
+	}
+
+	/**
+	 * The main method to query the Double Hybrid RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range, NaN if the range is invalid
+	 */
+	public double query(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.min(i, j+1);
+			}
+			double result = minOf(this.min(i, (bi+1)*this.blockSize), this.min(bj*this.blockSize, j+1));
+			if(bi+1<bj)
+			{
+				result = minOf(result, this.minArr[this.queryMinRMQIndex(bi+1, bj-1)]);
+			}
+			return result;
+		}
+		else
+		{
+			//Return NaN if input is not in the correct format
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Double Hybrid RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.minIndex(i, j+1);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			int result = this.minIndex(i, (bi+1)*this.blockSize);
+			if(bi+1<bj)
+			{
+				int block = this.queryMinRMQIndex(bi+1, bj-1);
+				int top = block*this.blockSize+this.minPosArr[block];
+				result = less(this.arr[top], this.arr[result])?top:result;
+			}
+			int right = this.minIndex(bj*this.blockSize, j+1);
+			return less(this.arr[right], this.arr[result])?right:result;
+		}
+		else
+		{
+			//Return -1 if input is not in the correct format
+			return -1;
+		}
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 *
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private int blockOf(int i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
+
+	/**
+	 * Helper method to find the minimum element of the input array in a given range
+	 *
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range
+	 * @return			The minimum element in the range
+	 */
+	private double min(int start, int end)
+	{
+		double result = this.arr[start];
+		for(int i=start+1; i<end; i++)
+		{
+			if(less(this.arr[i], result))
+			{
+				result = this.arr[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method to find the position of the leftmost minimum element of the input array in a given range
+	 *
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range
+	 * @return			The index of the leftmost minimum element in the range
+	 */
+	private int minIndex(int start, int end)
+	{
+		int result = start;
+		for(int i=start+1; i<end; i++)
+		{
+			if(less(this.arr[i], this.arr[result]))
+			{
+				result = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compare two elements with NaN greater than every number
+	 *
+	 * @param a		The first element
+	 * @param b		The second element
+	 * @return		True if a is strictly smaller than b
+	 */
+	static boolean less(double a, double b)
+	{
+		return a<b || (b!=b && a==a);
+	}
+
+	/**
+	 * Helper method to find the minimum of two elements with NaN greater than every number
+	 *
+	 * @param a		The first element
+	 * @param b		The second element
+	 * @return		The minimum element, a if they are equal
+	 */
+	static double minOf(double a, double b)
+	{
+		return less(b, a)?b:a;
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		return new MemoryFootprint("DoubleHybridRMQ")
+				.input(MemoryFootprint.arrayBytes(this.arr.length, Double.BYTES))
+				.object("object", 3*Integer.BYTES, 4)
+				.array("minArr", this.minArr.length, Double.BYTES)
+				.array("minPosArr", this.minPosArr)
+				.jagged("sparseArr", this.sparseArr);
+	}
+}
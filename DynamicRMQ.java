@@ -0,0 +1,405 @@
+package sxa190016;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Dynamic RMQ: Short project 10
+ * 				Fischer-Heun RMQ structure for Minimum Range Query supporting point updates,
+ * 				with Fully-Preprocessed BlockRMQ at the bottom and a segment tree over the block
+ * 				minima at the top.
+ *
+ * 				The blocks and their CartesianTypeTable are laid out as in FischerHeunRMQ, so an update
+ * 				only rescans its own block, recomputes its minimum and Cartesian Encoding, and walks
+ * 				the segment tree from the leaf of the block to the root, in O(log n) time. A query
+ * 				reads the tables of the blocks of its ends in constant time and O(log n) nodes of
+ * 				the segment tree.
+ *
+ * 				update() writes through to the input array. The structure is not safe for concurrent
+ * 				updates, or for queries running concurrently with an update, without external locking.
+ */
+public class DynamicRMQ implements RangeMinQuery {
+	/**
+	 * Store the size of the input array.
+	 */
+	private final int n;
+
+	/**
+	 * The input array, kept up to date by update()
+	 */
+	private final int [] arr;
+
+	/**
+	 * The minimum array populated with the minimum of each block level RMQ
+	 */
+	private final int [] minArr;
+
+	/**
+	 * Position of the leftmost minimum of each block relative to the start of the block
+	 */
+	private final byte [] minPosArr;
+
+	/**
+	 * Segment tree over the blocks holding the minimum of each node and the index of its leftmost block
+	 * with that minimum, packed by key() so that the smaller key is the leftmost minimum. The leaves
+	 * are at [minArr.length, 2*minArr.length) and node p has the children 2*p and 2*p+1.
+	 */
+	private final long [] segTree;
+
+	/**
+	 * Fully-Preprocessed tables of all the Cartesian Encodings present in the input
+	 */
+	private final CartesianTypeTable typeTable;
+
+	/**
+	 * Full preprocessing array to allow constant time search, the packed tables of typeTable,
+	 * replaced when an update materialises a new table
+	 */
+	private byte [] fullPreProcessArr;
+
+	/**
+	 * Block RMQ to Full-Preprocess array offset mapping
+	 */
+	private final int [] blockToPreprocessMap;
+
+	/**
+	 * Scratch stack of the Cartesian Encoding of an updated block
+	 */
+	private final int [] stack;
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	private final int blockShift;
+
+	/**
+	 * Constructor to initialize the DynamicRMQ class
+	 *
+	 * @param arr	The input array to be queried and updated
+	 */
+	public DynamicRMQ(int [] arr)
+	{
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the DynamicRMQ class with build options
+	 *
+	 * @param arr		The input array to be queried and updated
+	 * @param options	The build options. Only parallel(pool), blockSize(b) and powerOfTwoBlocks(true) apply
+	 * 					to a DynamicRMQ; order(Order.MAX), recursiveTop(true), lazyBlocks(true), vectorScan(true),
+	 * 					metrics(m) and verbose(true) are rejected.
+	 * @throws IllegalArgumentException	If an option the structure cannot apply is set
+	 */
+	public DynamicRMQ(int [] arr, BuildOptions options)
+	{
+		checkOptions(options);
+		this.n = arr.length;
+		this.arr = arr;
+
+		//Set optimal block size to log4(n)/2 unless given, rounded to a power of two if requested
+		int blockSize = options.blockSize()>0?options.blockSize():BlockLayout.fischerHeunBlockSize(Math.max(this.n, 1));
+		this.blockSize = options.powerOfTwoBlocks()?BlockLayout.powerOfTwo(blockSize):blockSize;
+		this.blockShift = BlockLayout.shift(this.blockSize);
+		int m = this.n>0?BlockLayout.blocks(this.n, this.blockSize):0;
+		this.minArr = new int [m];
+		this.minPosArr = new byte [m];
+		this.segTree = new long [2*m];
+		this.typeTable = new CartesianTypeTable(this.blockSize, m);
+		this.blockToPreprocessMap = new int [m];
+		this.stack = new int [this.blockSize];
+		if(this.n>0)
+		{
+			//Fill the minArray and the table of each block
+			this.fillMinArr(options.pool());
+
+			//Fill the segment tree from the leaves up
+			for(int b=0; b<m; b++)
+			{
+				this.segTree[m+b] = key(this.minArr[b], b);
+			}
+			for(int p=m-1; p>0; p--)
+			{
+				this.segTree[p] = Math.min(this.segTree[2*p], this.segTree[2*p+1]);
+			}
+		}
+		this.fullPreProcessArr = this.typeTable.tables();
+	}
+
+	/**
+	 * Helper method to reject the build options a DynamicRMQ cannot apply, rather than building
+	 * a structure other than the one asked for
+	 *
+	 * @param options	The build options
+	 * @throws IllegalArgumentException	If order(Order.MAX), recursiveTop(true), lazyBlocks(true),
+	 * 									vectorScan(true), metrics(m) or verbose(true) is set
+	 */
+	private static void checkOptions(BuildOptions options)
+	{
+		String unsupported = options.order()!=BuildOptions.Order.MIN?"order(Order.MAX)"
+				:options.recursiveTop()?"recursiveTop(true)"
+				:options.lazyBlocks()?"lazyBlocks(true)"
+				:options.vectorScan()?"vectorScan(true)"
+				:options.metrics()!=null?"metrics(m)"
+				:options.verbose()?"verbose(true)":null;
+		if(unsupported!=null)
+		{
+			throw new IllegalArgumentException("DynamicRMQ does not support BuildOptions."+unsupported);
+		}
+	}
+
+	/**
+	 * Helper method to find the minimum element and the table of each block
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillMinArr(ForkJoinPool pool)
+	{
+		//Find the minimum and the Cartesian Encoding of the blocks in parallel, with one stack per chunk
+		ParallelBuild.forRange(pool, 0, this.minArr.length, (from, to) -> {
+			int [] stack = new int [this.blockSize];
+			for(int b=from; b<to; b++)
+			{
+				this.fillBlockMin(b);
+				int start = b*this.blockSize;
+				this.blockToPreprocessMap[b] = CartesianTypeTable.encode(this.arr, start, this.blockEnd(b)-1, stack);
+			}
+		});
+
+		//Replace the encodings by table offsets in block order, so that the tables are laid out as in a sequential build
+		for(int b=0; b<this.minArr.length; b++)
+		{
+			this.blockToPreprocessMap[b] = this.typeTable.offsetOf(this.blockToPreprocessMap[b], this.arr, b*this.blockSize, this.blockEnd(b)-1);
+		}
+	}
+
+	/**
+	 * Helper method to find the minimum element of a block and its position
+	 *
+	 * @param b		The index of the block
+	 */
+	private void fillBlockMin(int b)
+	{
+		int start = b*this.blockSize;
+		int minIndex = start;
+		for(int i=start+1; i<this.blockEnd(b); i++)
+		{
+			if(this.arr[i]<this.arr[minIndex])
+			{
+				minIndex = i;
+			}
+		}
+		this.minArr[b] = this.arr[minIndex];
+		this.minPosArr[b] = (byte) (minIndex-start);
+	}
+
+	/**
+	 * Helper method to find the end of a block
+	 *
+	 * @param b		The index of the block
+	 * @return		The last+1 index of the block
+	 */
+	private int blockEnd(int b)
+	{
+		return Math.min((b+1)*this.blockSize, this.n);
+	}
+
+	/**
+	 * Set the element at an index and update the structure in O(log n) time
+	 *
+	 * @param index		The index of the element, in [0, n)
+	 * @param value		The new value of the element
+	 */
+	public void update(int index, int value)
+	{
+		if(index<0 || index>=this.n)
+		{
+			throw new IndexOutOfBoundsException("Index "+index+" out of bounds for length "+this.n);
+		}
+		this.arr[index] = value;
+
+		//Recompute the minimum and the table of the block only
+		int b = this.blockOf(index);
+		int start = b*this.blockSize;
+		this.fillBlockMin(b);
+		this.blockToPreprocessMap[b] = this.typeTable.offsetOf(this.arr, start, this.blockEnd(b)-1, this.stack);
+		this.fullPreProcessArr = this.typeTable.tables();
+
+		//Walk the segment tree from the leaf of the block to the root
+		int m = this.minArr.length;
+		this.segTree[m+b] = key(this.minArr[b], b);
+		for(int p=(m+b)>>>1; p>0; p>>>=1)
+		{
+			this.segTree[p] = Math.min(this.segTree[2*p], this.segTree[2*p+1]);
+		}
+	}
+
+	/**
+	 * Helper method to find the minimum of a range of blocks and its leftmost block in the segment tree
+	 *
+	 * @param i		The first block of the range
+	 * @param j		The last block of the range
+	 * @return		The key() of the minimum element in the range and of the leftmost block holding it
+	 */
+	private long queryMinRMQKey(int i, int j)
+	{
+		//Collect the nodes covering the range bottom-up, the keys break ties towards the leftmost block
+		int m = this.minArr.length;
+		long result = Long.MAX_VALUE;
+		for(int l=i+m, r=j+m+1; l<r; l>>>=1, r>>>=1)
+		{
+			if((l&1)==1)
+			{
+				result = Math.min(result, this.segTree[l++]);
+			}
+			if((r&1)==1)
+			{
+				result = Math.min(result, this.segTree[--r]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the segment tree in O(log n) time
+	 *
+	 * @param i		The first block of the range
+	 * @param j		The last block of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public int queryMinRMQIndex(int i, int j)
+	{
+		return (int) this.queryMinRMQKey(i, j);
+	}
+
+	/**
+	 * Helper method to pack the minimum of a block and its index so that keys compare by minimum, then by index
+	 *
+	 * @param min	The minimum of the block
+	 * @param block	The index of the block
+	 * @return		The minimum in the high 32 bits and the index in the low 32 bits
+	 */
+	private static long key(int min, int block)
+	{
+		return ((long) min<<32)|block;
+	}
+
+	/**
+	 * The main method to query the Dynamic RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	public int query(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.arr[this.queryFullPreprocTblIndex(bi, i, j)];
+			}
+			int result = Math.min(this.arr[this.queryFullPreprocTblIndex(bi, i, (bi+1)*this.blockSize-1)], this.arr[this.queryFullPreprocTblIndex(bj, bj*this.blockSize, j)]);
+			if(bi+1<bj)
+			{
+				result = Math.min(result, (int) (this.queryMinRMQKey(bi+1, bj-1)>>32));
+			}
+			return result;
+		}
+		else
+		{
+			//Return max value if input is not in the correct format
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Dynamic RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.queryFullPreprocTblIndex(bi, i, j);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			int result = this.queryFullPreprocTblIndex(bi, i, (bi+1)*this.blockSize-1);
+			if(bi+1<bj)
+			{
+				int block = this.queryMinRMQIndex(bi+1, bj-1);
+				int top = block*this.blockSize+this.minPosArr[block];
+				result = this.arr[top]<this.arr[result]?top:result;
+			}
+			int right = this.queryFullPreprocTblIndex(bj, bj*this.blockSize, j);
+			return this.arr[right]<this.arr[result]?right:result;
+		}
+		else
+		{
+			//Return -1 if input is not in the correct format
+			return -1;
+		}
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 *
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private int blockOf(int i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
+
+	/**
+	 * Method to find the position of the leftmost minimum element in a given range in Block RMQ
+	 *
+	 * @param block	The index of the block
+	 * @param start	The start index of the range, in the block
+	 * @param end	The end index of the range, in the block
+	 * @return		The index of the leftmost minimum element in the range
+	 */
+	private int queryFullPreprocTblIndex(int block, int start, int end)
+	{
+		int i = start-(block*this.blockSize);
+		int j = end-start;
+		return (block*this.blockSize)+this.fullPreProcessArr[this.blockToPreprocessMap[block]+i*this.blockSize-i*(i-1)/2+j];
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays
+	 * and the number of materialised Cartesian types, which grows as updates create new ones
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint footprint = new MemoryFootprint("DynamicRMQ")
+				.input(MemoryFootprint.arrayBytes(this.arr.length, Integer.BYTES))
+				.object("object", 3*Integer.BYTES, 8)
+				.array("minArr", this.minArr)
+				.array("minPosArr", this.minPosArr)
+				.array("segTree", this.segTree)
+				.array("blockToPreprocessMap", this.blockToPreprocessMap)
+				.array("stack", this.stack);
+		this.typeTable.footprint(footprint);
+		return footprint;
+	}
+}
@@ -1,10 +1,16 @@
 package sxa190016;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Random;
-import java.util.Scanner;
-import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
 
 import sxa190016.Timer;
 
@@ -14,47 +20,91 @@ import sxa190016.Timer;
  * @version 1.0 Fischer-Heun RMQ: Short project 10
  * 				Fischer-Heun RMQ structure for Minimum Range Query
  * 				with Fully-Preprocessed BlockRMQ at the bottom and Block-Minima RMQ at the top.
+ * 				The structure is immutable once constructed, so a single instance can be shared by any
+ * 				number of querying threads without locking, as long as the input array is not modified.
+ * 				Built with BuildOptions.lazyBlocks(true), the Cartesian Encoding and the table of a block
+ * 				are computed by the first query touching it, under a lock taken once per block, and then
+ * 				published to every thread, so the instance can still be shared.
+ * 				Built with BuildOptions.order(Order.MAX), every query returns the maximum instead.
  */
-public class FischerHeunRMQ {
+public class FischerHeunRMQ implements RangeMinQuery {
+	/**
+	 * Access to blockToPreprocessMap with acquire and release semantics, so that a query reading the
+	 * offset of a lazily materialised block also sees its table
+	 */
+	private static final VarHandle OFFSETS = MethodHandles.arrayElementVarHandle(int [].class);
+
 	/**
 	 * Store the size of the input array.
 	 */
-	private int n;
+	private final int n;
 
 	/**
 	 * The input array
 	 */
-	private int [] arr;
+	private final int [] arr;
 
 	/**
 	 * The minimum array populated with the minimum of each block level RMQ
 	 */
-	private int [] minArr;
+	private final int [] minArr;
+
+	/**
+	 * Position of the leftmost minimum of each block relative to the start of the block
+	 */
+	private final byte [] minPosArr;
+
+	/**
+	 * Sparse array to allow constant time search, holding the index of the block with the leftmost minimum,
+	 * empty if the top level is the recursive one
+	 */
+	private final int [][] sparseArr;
 
 	/**
-	 * Sparse array to allow constant time search
+	 * Recursive top level over the minArray, see BuildOptions.recursiveTop(), null if it is the sparse array
 	 */
-	private int [][] sparseArr;
+	private final BitmaskRMQ top;
 
 	/**
-	 * Full preprocessing array to allow constant time search
+	 * Fully-Preprocessed tables of all the Cartesian Encodings present in the input
 	 */
-	private int [][][] fullPreProcessArr;
+	private final CartesianTypeTable typeTable;
 
 	/**
-	 * Block RMQ to Full-Preprocess array index mapping
+	 * Full preprocessing array to allow constant time search, the packed tables of typeTable
 	 */
-	private int [] blockToPreprocessMap;
+	private final byte [] fullPreProcessArr;
+
+	/**
+	 * Block RMQ to Full-Preprocess array offset mapping, -1 until a block built lazily is materialised
+	 */
+	private final int [] blockToPreprocessMap;
 
 	/**
 	 * Block size of the BlockRMQ
 	 */
-	private int blockSize;
+	private final int blockSize;
+
+	/**
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	private final int blockShift;
 
 	/**
-	 * Set to 1 to print all the intermediate steps
+	 * Order of the elements, 0 to query the minimum and -1 to query the maximum. Every comparison
+	 * is made on value^mask, which reverses the order of the ints when the mask is -1.
 	 */
-	public int VERBOSE;
+	private final int mask;
+
+	/**
+	 * Set to 1 to print all the intermediate steps of the build, see BuildOptions.verbose()
+	 */
+	public final int VERBOSE;
+
+	/**
+	 * Metrics of the build and the queries, see BuildOptions.metrics(), null to record none
+	 */
+	private final QueryMetrics metrics;
 
 	/**
 	 * Constructor to initialize the FischerHeunRMQ class
@@ -63,87 +113,137 @@ public class FischerHeunRMQ {
 	 */
 	public FischerHeunRMQ(int [] arr)
 	{
-		this.VERBOSE = 0;
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the FischerHeunRMQ class with the given build options
+	 * 
+	 * @param arr		The input array to be queried
+	 * @param options	The options of the build
+	 */
+	public FischerHeunRMQ(int [] arr, BuildOptions options)
+	{
+		this.VERBOSE = options.verbose()?1:0;
+		this.metrics = options.metrics();
+		this.mask = options.order()==BuildOptions.Order.MAX?-1:0;
 		this.n = arr.length;
-		if(this.n>0)
+		this.arr = arr;
+
+		//Set optimal block size to log4(n)/2 unless given, rounded to a power of two if requested
+		int blockSize = options.blockSize()>0?options.blockSize():BlockLayout.fischerHeunBlockSize(Math.max(this.n, 1));
+		this.blockSize = options.powerOfTwoBlocks()?BlockLayout.powerOfTwo(blockSize):blockSize;
+		this.blockShift = BlockLayout.shift(this.blockSize);
+		this.minArr = new int [this.n>0?BlockLayout.blocks(this.n, this.blockSize):0];
+		this.minPosArr = new byte [this.minArr.length];
+		this.sparseArr = new int [this.n>0 && !options.recursiveTop()?BlockLayout.levels(this.minArr.length):0][];
+		this.typeTable = new CartesianTypeTable(this.blockSize, this.minArr.length);
+		this.blockToPreprocessMap = new int[this.minArr.length];
+		if(this.VERBOSE>0)
 		{
-			this.arr = arr;
-
-			//Set optimal block size to log4(n)/2
-			this.blockSize = (int) Math.round((Math.log(this.n)/Math.log(4))/2);
-			this.minArr = new int [(int) Math.ceil(this.n*1.0/this.blockSize)];
-			this.sparseArr = new int [(int) (Math.ceil(Math.log(this.minArr.length)/Math.log(2))+1)][];
-			this.fullPreProcessArr = new int[(int) Math.pow(4, this.blockSize)][][];
-			this.blockToPreprocessMap = new int[this.minArr.length];
-			if(this.VERBOSE>0)
-			{
-				System.out.println("n: "+this.n);
-				System.out.println("blockSize: "+this.blockSize);
-				System.out.println("minArr.length: "+this.minArr.length);
-				System.out.println("SparseArr.length:"+this.sparseArr.length);
-				System.out.println("fullPreProcessArr.length:"+this.fullPreProcessArr.length);
-				System.out.println("blockToPreprocessMap.length:"+this.blockToPreprocessMap.length);
-			}
+			System.out.println("n: "+this.n);
+			System.out.println("blockSize: "+this.blockSize);
+			System.out.println("minArr.length: "+this.minArr.length);
+			System.out.println("SparseArr.length:"+this.sparseArr.length);
+			System.out.println("Cartesian Encodings:"+(1<<(2*this.blockSize)));
+			System.out.println("blockToPreprocessMap.length:"+this.blockToPreprocessMap.length);
+		}
 
+		if(this.n>0)
+		{
 			//Fill the minArray containing the minimum elements of each block
-			this.fillMinArr();
+			long start = System.nanoTime();
+			this.fillMinArr(options.pool(), options.lazyBlocks());
+			this.phase("fillMinArr", start);
 
-			//Fill the Sparse Table in a DP fashion
-			this.fillSparseArr();
-		}		
+			//Fill the Sparse Table in a DP fashion, unless the top level is the recursive one
+			if(!options.recursiveTop())
+			{
+				start = System.nanoTime();
+				this.fillSparseArr(options.pool());
+				this.phase("fillSparseArr", start);
+			}
+		}
+		long start = System.nanoTime();
+		this.top = this.n>0 && options.recursiveTop()?new BitmaskRMQ(this.minArr, options):null;
+		if(this.top!=null)
+		{
+			this.phase("recursiveTop", start);
+		}
+		if(this.VERBOSE>0)
+		{
+			System.out.println("Top level bytes:"+this.topLevelBytes());
+		}
+		this.fullPreProcessArr = this.typeTable.tables();
 	}
 
 	/**
 	 * Helper method to find the minimum element of each block and populate the minArray
+	 * 
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 * @param lazy	True to leave the tables of the blocks to the first queries touching them
 	 */
-	public void fillMinArr()
+	private void fillMinArr(ForkJoinPool pool, boolean lazy)
 	{
-		for(int i=0; i<this.minArr.length-1; i++)
+		//Find the minimum and the Cartesian Encoding of the blocks in parallel, with one stack per chunk
+		ParallelBuild.forRange(pool, 0, this.minArr.length, (from, to) -> {
+			int [] stack = new int [this.blockSize];
+			for(int i=from; i<to; i++)
+			{
+				int start = i*this.blockSize;
+				int end = Math.min(start+this.blockSize, this.arr.length);
+				int minIndex = this.minIndex(this.arr, start, end);
+				this.minArr[i] = this.arr[minIndex];
+				this.minPosArr[i] = (byte) (minIndex-start);
+				this.blockToPreprocessMap[i] = lazy?-1:this.getCartesianType(start, end-1, stack);
+			}
+		});
+		if(lazy)
 		{
-			this.minArr[i] = this.min(this.arr, i*this.blockSize, (i+1)*this.blockSize);
-			this.blockToPreprocessMap[i] = this.fillFullPreprocessArr(i*this.blockSize, (i+1)*this.blockSize-1);
+			return;
 		}
-		this.minArr[this.minArr.length-1] = this.min(this.arr, (this.minArr.length-1)*this.blockSize, this.arr.length);
-		this.blockToPreprocessMap[this.minArr.length-1] = this.fillFullPreprocessArr((this.minArr.length-1)*this.blockSize, this.arr.length-1);
-	}
 
-	/**
-	 * Helper method to assign an index to each BlockRMQ based on it's Cartesian Encoding
-	 * and calculate the minima for each pair of (i, j) if not done previously for this Cartesian Encoding
-	 * 
-	 * @param start	The Start index of the Block
-	 * @param end	The end index of the block
-	 * @return		The index at which fully-preprocessed table is stored for this Cartesian Encoding
-	 */
-	public int fillFullPreprocessArr(int start, int end)
-	{
-		String encoding = this.getCartesianEncoding(start, end);
-		int index = Integer.parseInt(encoding,2);
-		if(this.fullPreProcessArr[index] == null)
+		//Replace the encodings by table offsets in block order, so that the tables are laid out as in a sequential build
+		for(int i=0; i<this.minArr.length; i++)
 		{
-			this.fullPreProcessArr[index] = this.getFullMinArray(start, end);
+			int start = i*this.blockSize;
+			this.blockToPreprocessMap[i] = this.typeTable.offsetOf(this.blockToPreprocessMap[i], (a, b) -> (this.arr[a]^this.mask)<(this.arr[b]^this.mask), start, Math.min(start+this.blockSize, this.arr.length)-1);
 		}
-		return index;
 	}
 
 	/**
 	 * Helper method to fill the sparseArray in a DP fashion
+	 * 
+	 * @param pool	The pool running the build, null to build on the calling thread
 	 */
-	public void fillSparseArr()
+	private void fillSparseArr(ForkJoinPool pool)
 	{
-		this.sparseArr[0] = new int [this.minArr.length];
-		System.arraycopy(this.minArr, 0, this.sparseArr[0], 0, this.minArr.length);
+		int [] first = new int [this.minArr.length];
+		ParallelBuild.forRange(pool, 0, first.length, (from, to) -> {
+			for(int j=from; j<to; j++)
+			{
+				first[j] = j;
+			}
+		});
+		this.sparseArr[0] = first;
 		for(int i=1; i<this.sparseArr.length; i++)
 		{
-			this.sparseArr[i] = new int [Math.max(this.minArr.length-(int)Math.pow(2, i)+1, 1)];
+			this.sparseArr[i] = new int [BlockLayout.levelSize(this.minArr.length, i)];
 			if(this.VERBOSE>0)
 			{
 				System.out.println(i+"th array size:"+this.sparseArr[i].length);
 			}
-			for(int j=0; j<this.sparseArr[i].length; j++)
-			{
-				this.sparseArr[i][j] = this.sparseArr[i-1][j]<this.sparseArr[i-1][Math.min(j+(int)Math.pow(2, i-1), this.sparseArr[i-1].length-1)]?this.sparseArr[i-1][j]:this.sparseArr[i-1][Math.min(j+(int)Math.pow(2, i-1), this.sparseArr[i-1].length-1)];
-			}
+			int [] prev = this.sparseArr[i-1];
+			int [] level = this.sparseArr[i];
+			int half = 1<<(i-1);
+			ParallelBuild.forRange(pool, 0, level.length, (from, to) -> {
+				for(int j=from; j<to; j++)
+				{
+					int left = prev[j];
+					int right = prev[Math.min(j+half, prev.length-1)];
+					level[j] = (this.minArr[left]^this.mask)<=(this.minArr[right]^this.mask)?left:right;
+				}
+			});
 		}
 	}
 
@@ -156,12 +256,31 @@ public class FischerHeunRMQ {
 	 */
 	public int queryMinRMQ(int i, int j)
 	{
-		int k = (int) (Math.log(j-i+1)/Math.log(2));
-		return this.sparseArr[k][i]<this.sparseArr[k][j-(int)Math.pow(2, k)+1]?this.sparseArr[k][i]:this.sparseArr[k][j-(int)Math.pow(2, k)+1];	
+		return this.minArr[this.queryMinRMQIndex(i, j)];
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time,
+	 * or in the recursive top level
+	 * 
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public int queryMinRMQIndex(int i, int j)
+	{
+		if(this.top!=null)
+		{
+			return this.top.queryIndex(i, j);
+		}
+		int k = BlockLayout.log2(j-i+1);
+		int left = this.sparseArr[k][i];
+		int right = this.sparseArr[k][j-(1<<k)+1];
+		return (this.minArr[left]^this.mask)<=(this.minArr[right]^this.mask)?left:right;
 	}
 
 	/**
-	 * The main method to query the Hybrid RMQ structure
+	 * The main method to query the Fischer-Heun RMQ structure
 	 * 
 	 * @param i		The start index of the range
 	 * @param j		The end index of the range
@@ -171,76 +290,204 @@ public class FischerHeunRMQ {
 	{
 		if(this.n>0 && i>=0 && i<=j && j<this.n)
 		{
-			//Find the start index of the minArray
-			int k = i%this.blockSize==0?i/this.blockSize:((i/this.blockSize)+1);
+			//Folded away by the JIT unless the metrics are enabled
+			if(QueryMetrics.ENABLED && this.metrics!=null)
+			{
+				return this.queryRecorded(i, j);
+			}
+			return this.queryRange(i, j);
+		}
+		else
+		{
+			//Return max value if input is not in the correct format
+			return Integer.MAX_VALUE;
+		}
+	}
 
-			//Find the end index of the minArray
-			int l = (j+1)%this.blockSize==0?j/this.blockSize:(j/this.blockSize)-1;
+	/**
+	 * Helper method to query a valid range. The range is split into the BlockLevel RMQ of the blocks of i and j
+	 * and the TopLevel Block-Minima RMQ of the blocks strictly between them, and the results are combined
+	 * the same way whatever the alignment of i and j.
+	 * 
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	private int queryRange(int i, int j)
+	{
+		int bi = this.blockOf(i);
+		int bj = this.blockOf(j);
+		if(bi==bj)
+		{
+			return this.queryFullPreprocTbl(bi, i, j);
+		}
+		int result = this.first(this.queryFullPreprocTbl(bi, i, (bi+1)*this.blockSize-1), this.queryFullPreprocTbl(bj, bj*this.blockSize, j));
+		if(bi+1<bj)
+		{
+			result = this.first(result, this.queryMinRMQ(bi+1, bj-1));
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 * 
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private int blockOf(int i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
 
-			//Split the range into 3 queries : starting BlockLevel RMQ + TopLevel Block-Minima RMQ + ending BlockLevel RMQ
-			if(k<=l)
+	/**
+	 * Helper method to query a valid range and record its decomposition branch and, if sampled, its latency
+	 * 
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	private int queryRecorded(int i, int j)
+	{
+		this.metrics.record(QueryMetrics.Branch.of(i, j, this.blockOf(i), this.blockOf(j), this.blockSize));
+		if(!QueryMetrics.sampled())
+		{
+			return this.queryRange(i, j);
+		}
+		long start = System.nanoTime();
+		int result = this.queryRange(i, j);
+		this.metrics.recordLatency(System.nanoTime()-start);
+		return result;
+	}
+
+	/**
+	 * Helper method to record the time of a preprocessing phase if metrics are recorded
+	 * 
+	 * @param name		The name of the phase
+	 * @param start		The System.nanoTime() at the start of the phase
+	 */
+	private void phase(String name, long start)
+	{
+		if(this.metrics!=null)
+		{
+			this.metrics.phase(name, start);
+		}
+	}
+
+	/**
+	 * Query the minimum element of a batch of ranges [lo[x], hi[x]] in the Fischer-Heun RMQ structure.
+	 * The queries are answered in groups of QueryBatch.GROUP, one dependent load of every query of
+	 * the group at a time, so that their cache misses overlap, and the ranges are not validated.
+	 * 
+	 * @param lo	The start indices of the ranges, 0 <= lo[x] <= hi[x]
+	 * @param hi	The end indices of the ranges, hi[x] < n
+	 * @param out	The array receiving the minimum element of each range
+	 */
+	public void query(int [] lo, int [] hi, int [] out)
+	{
+		QueryBatch batch = new QueryBatch();
+		for(int from=0; from<lo.length; from+=QueryBatch.GROUP)
+		{
+			int to = Math.min(from+QueryBatch.GROUP, lo.length);
+
+			//Table offsets of the blocks at both ends and sparse array entries of the blocks between them
+			for(int x=from, g=0; x<to; x++, g++)
 			{
-				if(i<k*this.blockSize)
-				{
-					if(j>=(l+1)*this.blockSize)
-					{
-						if(this.VERBOSE>0)
-						{
-							System.out.println("BlockRMQ:"+i+"-"+(k*this.blockSize-1)+" BlockRMQ:"+(l+1)*this.blockSize+"-"+j+" MinRMQ:"+k+"-"+l);
-						}
-						return Math.min(Math.min(this.queryFullPreprocTbl(k-1, i, k*this.blockSize-1), this.queryFullPreprocTbl(l+1, (l+1)*this.blockSize, j)), this.queryMinRMQ(k, l));
-					}
-					else
-					{
-						if(this.VERBOSE>0)
-						{
-							System.out.println("BlockRMQ:"+i+"-"+(k*this.blockSize-1)+" MinRMQ:"+k+"-"+l);
-						}
-						return Math.min(this.queryFullPreprocTbl(k-1, i, k*this.blockSize-1), this.queryMinRMQ(k, l));
-					}
-				}
-				else
+				int bi = this.blockOf(lo[x]);
+				int bj = this.blockOf(hi[x]);
+				batch.firstBlock[g] = bi;
+				batch.lastBlock[g] = bj;
+				batch.left[g] = this.offsetOf(bi);
+				batch.right[g] = this.offsetOf(bj);
+				if(bi+1<bj && this.top==null)
 				{
-					if(j>=(l+1)*this.blockSize)
-					{
-						if(this.VERBOSE>0)
-						{
-							System.out.println("BlockRMQ:"+(l+1)*this.blockSize+"-"+j+" MinRMQ:"+k+"-"+l);
-						}
-						return Math.min(this.queryFullPreprocTbl(l+1, (l+1)*this.blockSize, j), this.queryMinRMQ(k, l));
-					}
-					else
-					{
-						if(this.VERBOSE>0)
-						{
-							System.out.println("MinRMQ:"+k+"-"+l);
-						}
-						return this.queryMinRMQ(k, l);
-					}
+					int k = BlockLayout.log2(bj-bi-1);
+					batch.topLeft[g] = this.sparseArr[k][bi+1];
+					batch.topRight[g] = this.sparseArr[k][bj-(1<<k)];
 				}
 			}
-			else
+
+			//Positions of the minima of both ends in the tables, and the block minima between them
+			for(int x=from, g=0; x<to; x++, g++)
 			{
-				if(this.VERBOSE>0)
+				int bi = batch.firstBlock[g];
+				int bj = batch.lastBlock[g];
+				int i = lo[x]-bi*this.blockSize;
+				int j = (bi==bj?hi[x]:(bi+1)*this.blockSize-1)-lo[x];
+				batch.left[g] = bi*this.blockSize+this.fullPreProcessArr[batch.left[g]+i*this.blockSize-i*(i-1)/2+j];
+				batch.right[g] = bj*this.blockSize+this.fullPreProcessArr[batch.right[g]+hi[x]-bj*this.blockSize];
+				if(bi+1<bj)
 				{
-					System.out.println("BlockRMQ:"+i+"-"+j);
+					batch.topLeft[g] = this.top==null?this.minArr[batch.topLeft[g]]:this.queryMinRMQ(bi+1, bj-1);
+					batch.topRight[g] = this.top==null?this.minArr[batch.topRight[g]]:batch.topLeft[g];
 				}
-				if(i/this.blockSize==j/this.blockSize)
+			}
+
+			//Elements at the positions of both ends, combined with the block minima
+			for(int x=from, g=0; x<to; x++, g++)
+			{
+				int bi = batch.firstBlock[g];
+				int bj = batch.lastBlock[g];
+				int result = this.arr[batch.left[g]];
+				if(bi<bj)
 				{
-					return this.queryFullPreprocTbl(i/this.blockSize, i, j);
+					result = this.first(result, this.arr[batch.right[g]]);
 				}
-				else
+				if(bi+1<bj)
 				{
-					return Math.min(this.queryFullPreprocTbl(i/this.blockSize, i, (j/this.blockSize)*this.blockSize-1), this.queryFullPreprocTbl(j/this.blockSize, (j/this.blockSize)*this.blockSize, j));
+					result = this.first(result, this.first(batch.topLeft[g], batch.topRight[g]));
 				}
+				out[x] = result;
+			}
+		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Fischer-Heun RMQ structure
+	 * 
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.queryFullPreprocTblIndex(bi, i, j);
 			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			int result = this.queryFullPreprocTblIndex(bi, i, (bi+1)*this.blockSize-1);
+			if(bi+1<bj)
+			{
+				int block = this.queryMinRMQIndex(bi+1, bj-1);
+				int top = block*this.blockSize+this.minPosArr[block];
+				result = (this.arr[top]^this.mask)<(this.arr[result]^this.mask)?top:result;
+			}
+			int right = this.queryFullPreprocTblIndex(bj, bj*this.blockSize, j);
+			return (this.arr[right]^this.mask)<(this.arr[result]^this.mask)?right:result;
 		}
 		else
 		{
-			//Return max value if input is not in the correct format
-			return Integer.MAX_VALUE;
+			//Return -1 if input is not in the correct format
+			return -1;
 		}
+	}
 
+	/**
+	 * Helper method to find the first of two elements in the order of the structure
+	 * 
+	 * @param a		The first element
+	 * @param b		The second element
+	 * @return		The minimum of the two elements, or the maximum if the structure queries the maximum
+	 */
+	private int first(int a, int b)
+	{
+		return (b^this.mask)<(a^this.mask)?b:a;
 	}
 
 	/**
@@ -256,7 +503,7 @@ public class FischerHeunRMQ {
 		int result = arr[start];
 		for(int i=start+1; i<end; i++)
 		{
-			if(arr[i]<result)
+			if((arr[i]^this.mask)<(result^this.mask))
 			{
 				result = arr[i];
 			}
@@ -264,6 +511,27 @@ public class FischerHeunRMQ {
 		return result;
 	}
 
+	/**
+	 * Helper method to find the position of the leftmost minimum element in any array in a given range
+	 * 
+	 * @param arr		The array to be queried
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range
+	 * @return			The index of the leftmost minimum element in the range in the given array
+	 */
+	public int minIndex(int [] arr, int start, int end)
+	{
+		int result = start;
+		for(int i=start+1; i<end; i++)
+		{
+			if((arr[i]^this.mask)<(arr[result]^this.mask))
+			{
+				result = i;
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Method to find the minimum element in a given range in Block RMQ
 	 * 
@@ -273,117 +541,180 @@ public class FischerHeunRMQ {
 	 * @return		The minimum element in a given range in Block RMQ
 	 */
 	public int queryFullPreprocTbl(int block,int start, int end)
+	{
+		return this.arr[this.queryFullPreprocTblIndex(block, start, end)];
+	}
+
+	/**
+	 * Method to find the position of the leftmost minimum element in a given range in Block RMQ
+	 * 
+	 * @param block	The index of the block RMQ
+	 * @param start	The start index of the range
+	 * @param end	The last index of the range
+	 * @return		The index of the leftmost minimum element in a given range in Block RMQ
+	 */
+	public int queryFullPreprocTblIndex(int block,int start, int end)
 	{
 		int i = start-(block*this.blockSize);
-		int j = end-i-(block*this.blockSize);
-		int minIndex = this.fullPreProcessArr[this.blockToPreprocessMap[block]][i][j];
-		return this.arr[(block*this.blockSize)+minIndex];
+		int j = end-start;
+		int minIndex = this.fullPreProcessArr[this.offsetOf(block)+i*this.blockSize-i*(i-1)/2+j];
+		return (block*this.blockSize)+minIndex;
 	}
 
 	/**
-	 * Get the Cartesian Encoding for array elements in a given range
+	 * Helper method to get the offset of the table of a block in the Full-Preprocess array,
+	 * materialising the block if it is built lazily and no query touched it yet
 	 * 
-	 * @param start	The start index of the block RMQ
-	 * @param end	The last index of the block
-	 * @return		The Cartesian Encoding for array elements in the given range
+	 * @param block	The index of the block RMQ
+	 * @return		The offset of the table of the block
 	 */
-	public String getCartesianEncoding(int start, int end)
+	private int offsetOf(int block)
 	{
-		Stack<Node> stack = new Stack<Node>();
-		StringBuilder sb = new StringBuilder("");
+		//A plain load on x86 and ARM with LDAR, never negative once the block is materialised
+		int offset = (int) OFFSETS.getAcquire(this.blockToPreprocessMap, block);
+		return offset>=0?offset:this.materialise(block);
+	}
 
-		for(int i=start; i<=end; i++)
+	/**
+	 * Helper method to compute the Cartesian Encoding and the table of a block built lazily. The table is
+	 * filled under the lock of typeTable and its offset stored with release semantics afterwards, so a query
+	 * reading the offset sees the whole table. The tables never move, as typeTable is allocated with room
+	 * for every Cartesian type that can occur.
+	 * 
+	 * @param block	The index of the block RMQ
+	 * @return		The offset of the table of the block
+	 */
+	private int materialise(int block)
+	{
+		synchronized(this.typeTable)
 		{
-			Node newNode = new Node(this.arr[i], null, null);
-			Node oldNode = null;
-			while(!stack.isEmpty() && stack.peek().val>newNode.val)
+			//Another thread may have materialised the block while this one waited for the lock
+			int offset = this.blockToPreprocessMap[block];
+			if(offset<0)
 			{
-				oldNode = stack.pop();
-				sb.append("0");
+				int start = block*this.blockSize;
+				int end = Math.min(start+this.blockSize, this.n)-1;
+				int code = this.getCartesianType(start, end, new int [this.blockSize]);
+				offset = this.typeTable.offsetOf(code, (a, b) -> (this.arr[a]^this.mask)<(this.arr[b]^this.mask), start, end);
+				OFFSETS.setRelease(this.blockToPreprocessMap, block, offset);
 			}
-			newNode.left = oldNode;
-			if(!stack.isEmpty())
-			{
-				stack.peek().right = newNode;
-			}
-			stack.push(newNode);
-			sb.append("1");
+			return offset;
 		}
-		while(!stack.isEmpty())
+	}
+
+	/**
+	 * Materialise every block not touched yet by a query of a structure built with
+	 * BuildOptions.lazyBlocks(true), so that no later query takes the lock. It does nothing
+	 * if the blocks were materialised in the build.
+	 */
+	public void materialiseBlocks()
+	{
+		for(int b=0; b<this.blockToPreprocessMap.length; b++)
 		{
-			stack.pop();
-			sb.append("0");
+			this.offsetOf(b);
 		}
+	}
 
-		return sb.toString();
+	/**
+	 * Get the Cartesian Encoding for array elements in a given range
+	 * 
+	 * @param start	The start index of the block RMQ
+	 * @param end	The last index of the block
+	 * @return		The Cartesian Encoding for array elements in the given range
+	 */
+	public String getCartesianEncoding(int start, int end)
+	{
+		return Integer.toBinaryString(this.getCartesianType(start, end, new int [end-start+1]));
 	}
 
 	/**
-	 * To calculate the Fully-Preprocessed table for a given range
+	 * Get the Cartesian Encoding for array elements in a given range as an int, without creating
+	 * the Cartesian tree. Each push on the right spine of the tree appends a 1 bit and each pop a 0 bit,
+	 * so the result is the binary value of the String returned by getCartesianEncoding(start, end).
 	 * 
-	 * @param start	The start index of the Block RMQ
+	 * @param start	The start index of the block RMQ
 	 * @param end	The last index of the block
-	 * @return		The Full-Preprocessed table for the given range
+	 * @param stack	Scratch stack of at least end-start+1 elements holding the right spine of the tree
+	 * @return		The Cartesian Encoding for array elements in the given range
 	 */
-	public int[][] getFullMinArray(int start, int end)
+	public int getCartesianType(int start, int end, int [] stack)
 	{
-		int[][] arr = new int[this.blockSize][];
-		for(int i=0; i<=end-start; i++)
+		return CartesianTypeTable.encode(this.arr, start, end, stack, this.mask);
+	}
+
+	/**
+	 * Save the fully preprocessed structure to a snapshot file which can be memory-mapped and
+	 * queried in place by MappedFischerHeunRMQ. The blocks of a structure built lazily are
+	 * materialised first, as the snapshot holds the table of every block.
+	 * 
+	 * @param path			The path of the snapshot file
+	 * @throws IOException	If the file cannot be written
+	 */
+	public void save(String path) throws IOException
+	{
+		if(this.top!=null)
 		{
-			arr[i] = new int[end-start-i+1];
-			for(int j=0; j<=end-start-i; j++)
+			throw new IllegalStateException("A snapshot holds the sparse array, build without BuildOptions.recursiveTop()");
+		}
+		this.materialiseBlocks();
+		try(FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer buf = ByteBuffer.allocateDirect(DatasetLoader.BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			int m = this.n>0?this.minArr.length:0;
+			int levels = this.n>0?this.sparseArr.length:0;
+			int tableBytes = this.n>0?this.typeTable.count()*this.typeTable.tableSize():0;
+			DatasetLoader.writeInts(ch, buf, new int [] {MappedFischerHeunRMQ.MAGIC, MappedFischerHeunRMQ.VERSION, this.n, this.blockSize, m, levels, tableBytes, this.mask});
+			if(this.n>0)
 			{
-				if(j==0)
+				DatasetLoader.writeInts(ch, buf, this.arr);
+				DatasetLoader.writeInts(ch, buf, this.minArr);
+				for(int [] level : this.sparseArr)
+				{
+					DatasetLoader.writeInts(ch, buf, level);
+				}
+				DatasetLoader.writeInts(ch, buf, this.blockToPreprocessMap);
+				DatasetLoader.flush(ch, buf);
+				ByteBuffer bytes = ByteBuffer.wrap(this.minPosArr);
+				while(bytes.hasRemaining())
 				{
-					arr[i][j]=i;
+					ch.write(bytes);
 				}
-				else
+				bytes = ByteBuffer.wrap(this.fullPreProcessArr, 0, tableBytes);
+				while(bytes.hasRemaining())
 				{
-					arr[i][j]=this.arr[start+i+j]<this.arr[start+i+j-1]?i+j:arr[i][j-1];
+					ch.write(bytes);
 				}
 			}
-		}		
-		return arr;
+			DatasetLoader.flush(ch, buf);
+		}
 	}
 
 	/**
 	 * Main method to test the program
 	 * 
 	 * @param args		To pass command line arguments
-	 * @throws FileNotFoundException 
+	 * @throws IOException	If the input file cannot be loaded
 	 */
-	public static void main(String args []) throws FileNotFoundException
+	public static void main(String args []) throws IOException
 	{
-		//Initialize and array of desired size
-		int [] arr = new int [128000000];
+		//Load the array from a binary file of randomly generated numbers (see DatasetLoader to convert the text file)
+		int [] arr = DatasetLoader.load(args.length>0?args[0]:"C:\\Users\\shari\\Downloads\\128M.bin");
 
-		//Initialize scanner with a file containing randomly generated numbers
-		Scanner sc = new Scanner(new File("C:\\Users\\shari\\Downloads\\128M.txt"));
+		//Calculate average pre-processing time over 10 builds, after 2 warm-up builds
+		Timer t = new Timer();
+		IntUnaryOperator build = x -> new FischerHeunRMQ(arr).query(0, arr.length-1);
+		t.warmUp(2, build);
+		t.sample(10, build);
+		System.out.println("Preprocessing Time: "+t.mean()/1e6+" msec. p50: "+t.percentile(50)/1e6+" msec. Allocated: "+t.allocated()/10/1048576+" MB per build, GC: "+t.collections()+" collections");
 
-		//Populate the array
-		for(int i=0; i<arr.length; i++)
-		{
-			arr[i] = sc.nextInt();
-		}
-		sc.close();
+		//Time to the first answer when the blocks are materialised by the queries, a range of 101 elements
+		IntUnaryOperator lazy = x -> new FischerHeunRMQ(arr, new BuildOptions().lazyBlocks(true)).query(arr.length/2, arr.length/2+100);
+		t.warmUp(2, lazy);
+		t.sample(10, lazy);
+		System.out.println("Lazy Time to First Query: "+t.mean()/1e6+" msec. p50: "+t.percentile(50)/1e6+" msec.");
 
-		int y=0;
-		
-		//Set the timer
-		Timer t = new Timer();
-		
 		//Create an object of the FischerHeunRMQ class
-		FischerHeunRMQ hr = null;
-		
-		//Calculate average pre-processing time
-		for(y=0; y<10; y++)
-		{
-			hr = new FischerHeunRMQ(arr);
-		}
-		t.end();
-		
-		//Print the pre-processing time
-		System.out.println("Preprocessing Time:"+t.elapsedTime*1.0/y);
+		FischerHeunRMQ hr = new FischerHeunRMQ(arr);
 
 		Random rand = new Random();
 
@@ -399,136 +730,63 @@ public class FischerHeunRMQ {
 		//			}
 		//		}
 
-		//Calculate average query time on 100000 random ranges
+		//Calculate query time on 100000 random ranges, one sample per query after a warm-up pass
 		int [][] testCases = new int[100000][2];
 		for(int x=0; x<100000; x++)
 		{
-			testCases[x][0] = rand.nextInt(arr.length);
-			testCases[x][1] = rand.nextInt(arr.length);			
-		}
-
-		y=0;
-		t.start();
-		for(int[] x : testCases)
-		{
-			hr.query(x[0], x[1]);
-			y++;
-		}
-		t.end();
-		
-		//Print average query time
-		System.out.println("Query Time:"+t.elapsedTime*1.0/y);
-
-		//Re-initialize the timer
-		t.start();
-		int j = 0;		
-		//Query 10% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*45), (arr.length/100*55));
-			j++;
+			int i = rand.nextInt(arr.length);
+			int j = rand.nextInt(arr.length);
+			testCases[x][0] = Math.min(i, j);
+			testCases[x][1] = Math.max(i, j);
 		}
-		t.end();
-		System.out.println("10% : "+t.elapsedTime*1.0/j+" msec.");
+		IntUnaryOperator random = x -> hr.query(testCases[x][0], testCases[x][1]);
+		t.warmUp(100000, random);
+		t.sample(100000, random);
+		System.out.println("Query Time: "+t.summary());
 
-		t.start();
-		j = 0;
-		//Query 20% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
+		//Query 10%, 20%, ... 100% ranges centered in the FischerHeunRMQ and print the time of execution
+		for(int p=10; p<=100; p+=10)
 		{
-			hr.query((arr.length/100*40), (arr.length/100*60));
-			j++;
+			int lo = arr.length/100*(50-p/2);
+			int hi = p==100?arr.length-1:arr.length/100*(50+p/2);
+			IntUnaryOperator fixed = x -> hr.query(lo, hi);
+			t.warmUp(100000, fixed);
+			t.sample(100000, fixed);
+			System.out.println(p+"% : "+t.summary());
 		}
-		t.end();
-		System.out.println("20% : "+t.elapsedTime*1.0/j+" msec.");
-
-		t.start();
-		j = 0;
-		//Query 30% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*35), (arr.length/100*65));
-			j++;
-		}
-		t.end();
-		System.out.println("30% : "+t.elapsedTime*1.0/j+" msec.");
-
-		t.start();
-		j = 0;
-		//Query 40% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*30), (arr.length/100*70));
-			j++;
-		}
-		t.end();
-		System.out.println("40% : "+t.elapsedTime*1.0/j+" msec.");
-
-		t.start();
-		j = 0;
-		//Query 50% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*25), (arr.length/100*75));
-			j++;
-		}
-		t.end();
-		System.out.println("50% : "+t.elapsedTime*1.0/j+" msec.");
-
-		t.start();
-		j = 0;
-		//Query 60% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*20), (arr.length/100*80));
-			j++;
-		}
-		t.end();
-		System.out.println("60% : "+t.elapsedTime*1.0/j+" msec.");
-
-		t.start();
-		j = 0;
-		//Query 70% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*15), (arr.length/100*85));
-			j++;
-		}
-		t.end();
-		System.out.println("70% : "+t.elapsedTime*1.0/j+" msec.");
-
-		t.start();
-		j = 0;
-		//Query 80% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*10), (arr.length/100*90));
-			j++;
-		}
-		t.end();
-		System.out.println("80% : "+t.elapsedTime*1.0/j+" msec.");
+	}
 
-		t.start();
-		j = 0;
-		//Query 90% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*5), (arr.length/100*95));
-			j++;
-		}
-		t.end();
-		System.out.println("90% : "+t.elapsedTime*1.0/j+" msec.");
+	/**
+	 * Get the memory used by the top level, the sparse array or the recursive one over the block minima
+	 * 
+	 * @return		The size of the top level in bytes
+	 */
+	public long topLevelBytes()
+	{
+		return this.top!=null?this.top.indexBytes():BlockLayout.bytes(this.sparseArr);
+	}
 
-		t.start();
-		j = 0;
-		//Query 100% range in the FischerHeunRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays,
+	 * the recursive top level under the prefix top. and the number of materialised Cartesian types
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint footprint = new MemoryFootprint("FischerHeunRMQ")
+				.input(MemoryFootprint.arrayBytes(this.arr.length, Integer.BYTES))
+				.object("object", 5*Integer.BYTES, 9)
+				.array("minArr", this.minArr)
+				.array("minPosArr", this.minPosArr)
+				.jagged("sparseArr", this.sparseArr)
+				.array("blockToPreprocessMap", this.blockToPreprocessMap);
+		synchronized(this.typeTable)
 		{
-			hr.query((arr.length/100*0), (arr.length/100*100)-1);
-			j++;
+			//The number of Cartesian types grows with the blocks materialised by the queries
+			this.typeTable.footprint(footprint);
 		}
-		t.end();
-		System.out.println("100% : "+t.elapsedTime*1.0/j+" msec.");
+		return this.top==null?footprint:footprint.include("top.", this.top.memoryFootprint());
 	}
 
 	/**
@@ -560,24 +818,4 @@ public class FischerHeunRMQ {
 			System.out.println();
 		}
 	}
-
-	/**
-	 * @author sxa190016
-	 * @author bsv180000
-	 * @version 1.0 Fischer-Heun RMQ: Short project 10
-	 * 				Node class to construct the Cartesian tree during the calculation of 
-	 * 				Cartesian encoding.
-	 */
-	static class Node {
-		public int val;
-		public Node left;
-		public Node right;
-
-		public Node(int val, Node leftChild, Node rightChild)
-		{
-			this.val = val;
-			this.left = leftChild;
-			this.right = rightChild;
-		}
-	}
 }
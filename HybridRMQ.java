@@ -1,9 +1,9 @@
 package sxa190016;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Random;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
 
 import sxa190016.Timer;
 
@@ -13,37 +13,72 @@ import sxa190016.Timer;
  * @version 1.0 Hybrid 1 RMQ: Short project 10
  * 				Hybrid 1 RMQ structure for Minimum Range Query
  * 				with BlockRMQ at the bottom and Block-Minima RMQ at the top.
+ * 				The structure is immutable once constructed, so a single instance can be shared by any
+ * 				number of querying threads without locking, as long as the input array is not modified.
+ * 				Built with BuildOptions.order(Order.MAX), every query returns the maximum instead.
  */
-public class HybridRMQ {
+public class HybridRMQ implements RangeMinQuery {
 	/**
 	 * Store the size of the input array.
 	 */
-	private int n;
+	private final int n;
 
 	/**
 	 * The input array
 	 */
-	private int [] arr;
+	private final int [] arr;
 
 	/**
 	 * The minimum array populated with the minimum of each block level RMQ
 	 */
-	private int [] minArr;
+	private final int [] minArr;
 
 	/**
-	 * Sparse array to allow constant time search
+	 * Position of the leftmost minimum of each block relative to the start of the block
 	 */
-	private int [][] sparseArr;
+	private final byte [] minPosArr;
+
+	/**
+	 * Sparse array to allow constant time search, holding the index of the block with the leftmost minimum,
+	 * empty if the top level is the recursive one
+	 */
+	private final int [][] sparseArr;
+
+	/**
+	 * Recursive top level over the minArray, see BuildOptions.recursiveTop(), null if it is the sparse array
+	 */
+	private final BitmaskRMQ top;
 
 	/**
 	 * Block size of the BlockRMQ
 	 */
-	private int blockSize;
+	private final int blockSize;
 
 	/**
-	 * Set to 1 to print all the intermediate steps
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
 	 */
-	public int VERBOSE;
+	private final int blockShift;
+
+	/**
+	 * Order of the elements, 0 to query the minimum and -1 to query the maximum. Every comparison
+	 * is made on value^mask, which reverses the order of the ints when the mask is -1.
+	 */
+	private final int mask;
+
+	/**
+	 * Scan of the blocks at both ends of a query, see BuildOptions.vectorScan()
+	 */
+	private final BlockScanner scanner;
+
+	/**
+	 * Set to 1 to print all the intermediate steps of the build, see BuildOptions.verbose()
+	 */
+	public final int VERBOSE;
+
+	/**
+	 * Metrics of the build and the queries, see BuildOptions.metrics(), null to record none
+	 */
+	private final QueryMetrics metrics;
 
 	/**
 	 * Constructor to initialize the HybridRMQ class
@@ -52,62 +87,119 @@ public class HybridRMQ {
 	 */
 	public HybridRMQ(int [] arr)
 	{
-		this.VERBOSE = 0;
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the HybridRMQ class with the given build options
+	 * 
+	 * @param arr		The input array to be queried
+	 * @param options	The options of the build
+	 */
+	public HybridRMQ(int [] arr, BuildOptions options)
+	{
+		this.VERBOSE = options.verbose()?1:0;
+		this.metrics = options.metrics();
+		this.mask = options.order()==BuildOptions.Order.MAX?-1:0;
+		this.scanner = options.vectorScan()?BlockScanner.vector():BlockScanner.SCALAR;
 		this.n = arr.length;
+		this.arr = arr;
+
+		//Set optimal block size to log2(n), or larger blocks for the SIMD scan, unless given, rounded to a power of two if requested
+		int blockSize = options.blockSize()>0?options.blockSize():this.scanner!=BlockScanner.SCALAR?BlockLayout.vectorBlockSize(Math.max(this.n, 1)):BlockLayout.hybridBlockSize(Math.max(this.n, 1));
+		this.blockSize = options.powerOfTwoBlocks()?BlockLayout.powerOfTwo(blockSize):blockSize;
+		if(this.blockSize>BlockLayout.MAX_HYBRID_BLOCK_SIZE)
+		{
+			throw new IllegalArgumentException("Block size must be at most "+BlockLayout.MAX_HYBRID_BLOCK_SIZE+": "+this.blockSize);
+		}
+		this.blockShift = BlockLayout.shift(this.blockSize);
+		this.minArr = new int [this.n>0?BlockLayout.blocks(this.n, this.blockSize):0];
+		this.minPosArr = new byte [this.minArr.length];
+		this.sparseArr = new int [this.n>0 && !options.recursiveTop()?BlockLayout.levels(this.minArr.length):0][];
+
 		if(this.n>0)
 		{
-			this.arr = arr;
-			
-			//Set optimal block size to log2(n) 
-			this.blockSize = (int) Math.round(Math.log(this.n)/Math.log(2));
-			this.minArr = new int [(int) Math.ceil(this.n*1.0/this.blockSize)];
-			this.sparseArr = new int [(int) (Math.ceil(Math.log(this.minArr.length)/Math.log(2))+1)][];
-			
 			//Fill the minArray containing the minimum elements of each block
-			this.fillMinArr();
-			
-			//Fill the Sparse Table in a DP fashion
-			this.fillSparseArr();
-			if(this.VERBOSE>0)
+			long start = System.nanoTime();
+			this.fillMinArr(options.pool());
+			this.phase("fillMinArr", start);
+
+			//Fill the Sparse Table in a DP fashion, unless the top level is the recursive one
+			if(!options.recursiveTop())
 			{
-				System.out.println("n: "+this.n);
-				System.out.println("blockSize: "+this.blockSize);
-				System.out.println("minArr.length: "+this.minArr.length);
-				System.out.println("SparseArr.length:"+this.sparseArr.length);
+				start = System.nanoTime();
+				this.fillSparseArr(options.pool());
+				this.phase("fillSparseArr", start);
 			}
-		}		
+		}
+		long start = System.nanoTime();
+		this.top = this.n>0 && options.recursiveTop()?new BitmaskRMQ(this.minArr, options):null;
+		if(this.top!=null)
+		{
+			this.phase("recursiveTop", start);
+		}
+		if(this.VERBOSE>0)
+		{
+			System.out.println("n: "+this.n);
+			System.out.println("blockSize: "+this.blockSize);
+			System.out.println("Vector scan:"+this.vectorScan());
+			System.out.println("minArr.length: "+this.minArr.length);
+			System.out.println("SparseArr.length:"+this.sparseArr.length);
+			System.out.println("Top level bytes:"+this.topLevelBytes());
+		}
 	}
 
 	/**
 	 * Helper method to find the minimum element of each block and populate the minArray
+	 * 
+	 * @param pool	The pool running the build, null to build on the calling thread
 	 */
-	public void fillMinArr()
+	private void fillMinArr(ForkJoinPool pool)
 	{
-		for(int i=0; i<this.minArr.length-1; i++)
-		{
-			this.minArr[i] = this.min(this.arr, i*this.blockSize, (i+1)*this.blockSize);
-		}
-		this.minArr[this.minArr.length-1] = this.min(this.arr, (this.minArr.length-1)*this.blockSize, this.arr.length);
+		ParallelBuild.forRange(pool, 0, this.minArr.length, (from, to) -> {
+			for(int i=from; i<to; i++)
+			{
+				int start = i*this.blockSize;
+				int minIndex = this.minIndex(this.arr, start, Math.min(start+this.blockSize, this.arr.length));
+				this.minArr[i] = this.arr[minIndex];
+				this.minPosArr[i] = (byte) (minIndex-start);
+			}
+		});
 	}
 
 	/**
 	 * Helper method to fill the sparseArray in a DP fashion
+	 * 
+	 * @param pool	The pool running the build, null to build on the calling thread
 	 */
-	public void fillSparseArr()
+	private void fillSparseArr(ForkJoinPool pool)
 	{
-		this.sparseArr[0] = new int [this.minArr.length];
-		System.arraycopy(this.minArr, 0, this.sparseArr[0], 0, this.minArr.length);
+		int [] first = new int [this.minArr.length];
+		ParallelBuild.forRange(pool, 0, first.length, (from, to) -> {
+			for(int j=from; j<to; j++)
+			{
+				first[j] = j;
+			}
+		});
+		this.sparseArr[0] = first;
 		for(int i=1; i<this.sparseArr.length; i++)
 		{
-			this.sparseArr[i] = new int [Math.max(this.minArr.length-(int)Math.pow(2, i)+1, 1)];
+			this.sparseArr[i] = new int [BlockLayout.levelSize(this.minArr.length, i)];
 			if(this.VERBOSE>0)
 			{
 				System.out.println(i+"th array size:"+this.sparseArr[i].length);
 			}
-			for(int j=0; j<this.sparseArr[i].length; j++)
-			{
-				this.sparseArr[i][j] = this.sparseArr[i-1][j]<this.sparseArr[i-1][Math.min(j+(int)Math.pow(2, i-1), this.sparseArr[i-1].length-1)]?this.sparseArr[i-1][j]:this.sparseArr[i-1][Math.min(j+(int)Math.pow(2, i-1), this.sparseArr[i-1].length-1)];
-			}
+			int [] prev = this.sparseArr[i-1];
+			int [] level = this.sparseArr[i];
+			int half = 1<<(i-1);
+			ParallelBuild.forRange(pool, 0, level.length, (from, to) -> {
+				for(int j=from; j<to; j++)
+				{
+					int left = prev[j];
+					int right = prev[Math.min(j+half, prev.length-1)];
+					level[j] = (this.minArr[left]^this.mask)<=(this.minArr[right]^this.mask)?left:right;
+				}
+			});
 		}
 	}
 
@@ -120,8 +212,27 @@ public class HybridRMQ {
 	 */
 	public int queryMinRMQ(int i, int j)
 	{
-		int k = (int) (Math.log(j-i+1)/Math.log(2));
-		return this.sparseArr[k][i]<this.sparseArr[k][j-(int)Math.pow(2, k)+1]?this.sparseArr[k][i]:this.sparseArr[k][j-(int)Math.pow(2, k)+1];	
+		return this.minArr[this.queryMinRMQIndex(i, j)];
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time,
+	 * or in the recursive top level
+	 * 
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public int queryMinRMQIndex(int i, int j)
+	{
+		if(this.top!=null)
+		{
+			return this.top.queryIndex(i, j);
+		}
+		int k = BlockLayout.log2(j-i+1);
+		int left = this.sparseArr[k][i];
+		int right = this.sparseArr[k][j-(1<<k)+1];
+		return (this.minArr[left]^this.mask)<=(this.minArr[right]^this.mask)?left:right;
 	}
 
 	/**
@@ -135,73 +246,206 @@ public class HybridRMQ {
 	{
 		if(this.n>0 && i>=0 && i<=j && j<this.n)
 		{
-			//Find the start index of the minArray
-			int k = i%this.blockSize==0?i/this.blockSize:((i/this.blockSize)+1);
-			
-			//Find the end index of the minArray
-			int l = (j+1)%this.blockSize==0?j/this.blockSize:(j/this.blockSize)-1;
-			
-			//Split the range into 3 queries : starting BlockLevel RMQ + TopLevel Block-Minima RMQ + ending BlockLevel RMQ
-			if(k<=l)
+			//Folded away by the JIT unless the metrics are enabled
+			if(QueryMetrics.ENABLED && this.metrics!=null)
+			{
+				return this.queryRecorded(i, j);
+			}
+			return this.queryRange(i, j);
+		}
+		else
+		{
+			//Return max value if input is not in the correct format
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Helper method to query a valid range. The range is split into the BlockLevel RMQ of the blocks of i and j
+	 * and the TopLevel Block-Minima RMQ of the blocks strictly between them, and the results are combined
+	 * the same way whatever the alignment of i and j.
+	 * 
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	private int queryRange(int i, int j)
+	{
+		int bi = this.blockOf(i);
+		int bj = this.blockOf(j);
+		if(bi==bj)
+		{
+			return this.min(this.arr, i, j+1);
+		}
+		int result = this.first(this.min(this.arr, i, (bi+1)*this.blockSize), this.min(this.arr, bj*this.blockSize, j+1));
+		if(bi+1<bj)
+		{
+			result = this.first(result, this.queryMinRMQ(bi+1, bj-1));
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 * 
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private int blockOf(int i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
+
+	/**
+	 * Helper method to query a valid range and record its decomposition branch and, if sampled, its latency
+	 * 
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	private int queryRecorded(int i, int j)
+	{
+		this.metrics.record(QueryMetrics.Branch.of(i, j, this.blockOf(i), this.blockOf(j), this.blockSize));
+		if(!QueryMetrics.sampled())
+		{
+			return this.queryRange(i, j);
+		}
+		long start = System.nanoTime();
+		int result = this.queryRange(i, j);
+		this.metrics.recordLatency(System.nanoTime()-start);
+		return result;
+	}
+
+	/**
+	 * Helper method to record the time of a preprocessing phase if metrics are recorded
+	 * 
+	 * @param name		The name of the phase
+	 * @param start		The System.nanoTime() at the start of the phase
+	 */
+	private void phase(String name, long start)
+	{
+		if(this.metrics!=null)
+		{
+			this.metrics.phase(name, start);
+		}
+	}
+
+	/**
+	 * Query the minimum element of a batch of ranges [lo[x], hi[x]] in the Hybrid RMQ structure.
+	 * The queries are answered in groups of QueryBatch.GROUP, one dependent load of every query of
+	 * the group at a time, so that their cache misses overlap, and the ranges are not validated.
+	 * 
+	 * @param lo	The start indices of the ranges, 0 <= lo[x] <= hi[x]
+	 * @param hi	The end indices of the ranges, hi[x] < n
+	 * @param out	The array receiving the minimum element of each range
+	 */
+	public void query(int [] lo, int [] hi, int [] out)
+	{
+		QueryBatch batch = new QueryBatch();
+		for(int from=0; from<lo.length; from+=QueryBatch.GROUP)
+		{
+			int to = Math.min(from+QueryBatch.GROUP, lo.length);
+
+			//First and last elements of the scans of both ends, which start loading their cache lines,
+			//and sparse array entries of the blocks strictly between the blocks of both ends
+			for(int x=from, g=0; x<to; x++, g++)
 			{
-				if(i<k*this.blockSize)
+				int bi = this.blockOf(lo[x]);
+				int bj = this.blockOf(hi[x]);
+				batch.firstBlock[g] = bi;
+				batch.lastBlock[g] = bj;
+				batch.left[g] = this.first(this.arr[lo[x]], this.arr[bi==bj?hi[x]:(bi+1)*this.blockSize-1]);
+				batch.right[g] = this.first(this.arr[bj*this.blockSize], this.arr[hi[x]]);
+				if(bi+1<bj && this.top==null)
 				{
-					if(j>=(l+1)*this.blockSize)
-					{
-						if(this.VERBOSE>0)
-						{
-							System.out.println("BlockRMQ:"+i+"-"+(k*this.blockSize-1)+" BlockRMQ:"+(l+1)*this.blockSize+"-"+j+" MinRMQ:"+k+"-"+l);
-						}
-						return Math.min(Math.min(this.min(this.arr, i, k*this.blockSize), this.min(this.arr, (l+1)*this.blockSize, j+1)), this.queryMinRMQ(k, l));
-					}
-					else
-					{
-						if(this.VERBOSE>0)
-						{
-							System.out.println("BlockRMQ:"+i+"-"+(k*this.blockSize-1)+" MinRMQ:"+k+"-"+l);
-						}
-						return Math.min(this.min(this.arr, i, k*this.blockSize), this.queryMinRMQ(k, l));
-					}
+					int k = BlockLayout.log2(bj-bi-1);
+					batch.topLeft[g] = this.sparseArr[k][bi+1];
+					batch.topRight[g] = this.sparseArr[k][bj-(1<<k)];
 				}
-				else
+			}
+
+			//Block minima between both ends
+			for(int g=0; g<to-from; g++)
+			{
+				int bi = batch.firstBlock[g];
+				int bj = batch.lastBlock[g];
+				if(bi+1<bj)
 				{
-					if(j>=(l+1)*this.blockSize)
-					{
-						if(this.VERBOSE>0)
-						{
-							System.out.println("BlockRMQ:"+(l+1)*this.blockSize+"-"+j+" MinRMQ:"+k+"-"+l);
-						}
-						return Math.min(this.min(this.arr, (l+1)*this.blockSize, j+1), this.queryMinRMQ(k, l));
-					}
-					else
-					{
-						if(this.VERBOSE>0)
-						{
-							System.out.println("MinRMQ:"+k+"-"+l);
-						}
-						return this.queryMinRMQ(k, l);
-					}
+					batch.topLeft[g] = this.top==null?this.minArr[batch.topLeft[g]]:this.queryMinRMQ(bi+1, bj-1);
+					batch.topRight[g] = this.top==null?this.minArr[batch.topRight[g]]:batch.topLeft[g];
 				}
 			}
-			else
+
+			//Scans of the blocks of both ends, combined with the block minima
+			for(int x=from, g=0; x<to; x++, g++)
 			{
-				if(this.VERBOSE>0)
+				int bi = batch.firstBlock[g];
+				int bj = batch.lastBlock[g];
+				if(bi==bj)
 				{
-					System.out.println("BlockRMQ:"+i+"-"+j);
+					out[x] = this.first(batch.left[g], this.min(this.arr, lo[x], hi[x]+1));
+					continue;
 				}
-				return this.min(this.arr, i, j+1);
+				int result = this.first(this.first(batch.left[g], this.min(this.arr, lo[x], (bi+1)*this.blockSize)), this.first(batch.right[g], this.min(this.arr, bj*this.blockSize, hi[x]+1)));
+				if(bi+1<bj)
+				{
+					result = this.first(result, this.first(batch.topLeft[g], batch.topRight[g]));
+				}
+				out[x] = result;
 			}
 		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Hybrid RMQ structure
+	 * 
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.minIndex(this.arr, i, j+1);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			int result = this.minIndex(this.arr, i, (bi+1)*this.blockSize);
+			if(bi+1<bj)
+			{
+				int block = this.queryMinRMQIndex(bi+1, bj-1);
+				int top = block*this.blockSize+this.minPosArr[block];
+				result = (this.arr[top]^this.mask)<(this.arr[result]^this.mask)?top:result;
+			}
+			int right = this.minIndex(this.arr, bj*this.blockSize, j+1);
+			return (this.arr[right]^this.mask)<(this.arr[result]^this.mask)?right:result;
+		}
 		else
 		{
-			//Return max value if input is not in the correct format
-			return Integer.MAX_VALUE;
+			//Return -1 if input is not in the correct format
+			return -1;
 		}
+	}
 
+	/**
+	 * Helper method to find the first of two elements in the order of the structure
+	 * 
+	 * @param a		The first element
+	 * @param b		The second element
+	 * @return		The minimum of the two elements, or the maximum if the structure queries the maximum
+	 */
+	private int first(int a, int b)
+	{
+		return (b^this.mask)<(a^this.mask)?b:a;
 	}
 
 	/**
-	 * Helper method to find the minimum element in any array in a given range
+	 * Helper method to find the minimum element in any array in a given range, with the SIMD scan if enabled
 	 * 
 	 * @param arr		The array to be queried
 	 * @param start		The start index of the range
@@ -210,12 +454,25 @@ public class HybridRMQ {
 	 */
 	public int min(int [] arr, int start, int end)
 	{
-		int result = arr[start];
+		return this.scanner.min(arr, start, end, this.mask);
+	}
+
+	/**
+	 * Helper method to find the position of the leftmost minimum element in any array in a given range
+	 * 
+	 * @param arr		The array to be queried
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range
+	 * @return			The index of the leftmost minimum element in the range in the given array
+	 */
+	public int minIndex(int [] arr, int start, int end)
+	{
+		int result = start;
 		for(int i=start+1; i<end; i++)
 		{
-			if(arr[i]<result)
+			if((arr[i]^this.mask)<(arr[result]^this.mask))
 			{
-				result = arr[i];
+				result = i;
 			}
 		}
 		return result;
@@ -225,179 +482,100 @@ public class HybridRMQ {
 	 * Main method to test the program
 	 * 
 	 * @param args		To pass command line arguments
-	 * @throws FileNotFoundException 
+	 * @throws IOException	If the input file cannot be loaded
 	 */
-	public static void main(String args []) throws FileNotFoundException
+	public static void main(String args []) throws IOException
 	{
-		//Initialize and array of desired size
-		int [] arr = new int [128000000];
-		
-		//Initialize scanner with a file containing randomly generated numbers
-		Scanner sc = new Scanner(new File("C:\\Users\\shari\\Downloads\\128M.txt"));
-		
-		//Populate the array
-		for(int i=0; i<arr.length; i++)
-		{
-			arr[i] = sc.nextInt();
-		}
-		sc.close();
-		
-		int y=0;
-		
-		//Set the timer
-		Timer t = new Timer();
-		
-		//Create an object of the HybridRMQ class
-		HybridRMQ hr = null;
-		for(y=0; y<10; y++)
-		{
-			hr = new HybridRMQ(arr);
-		}
-		t.end();
-		System.out.println("Preprocessing Time:"+t.elapsedTime*1.0/y);
-		
-		Random rand = new Random();
-		
-		//Uncomment to check correctness of the implementation
-//		for(int x=0; x<10000; x++)
-//		{
-//			int i = rand.nextInt(arr.length);
-//			int j = rand.nextInt(arr.length);
-//			int result = hr.query(i, j);
-//			if(result!=Integer.MAX_VALUE && result!=hr.min(hr.arr, i, j+1))
-//			{
-//				System.out.println("Incorrect result! Min in range ("+i+","+j+") is not "+result);
-//			}
-//		}
-		
-		//Calculating average query time on 10000 random ranges
-		int [][] testCases = new int[10000][2];
-		for(int x=0; x<10000; x++)
-		{
-			testCases[x][0] = rand.nextInt(arr.length);
-			testCases[x][1] = rand.nextInt(arr.length);			
-		}
-		
-		y=0;
-		t.start();
-		for(int[] x : testCases)
-		{
-			hr.query(x[0], x[1]);
-			y++;
-		}
-		t.end();
-		System.out.println("Query Time:"+t.elapsedTime*1.0/y);
-		
-		//Re-initialize the timer
-		t.start();
-		int j = 0;		
-		//Query 10% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*45), (arr.length/100*55));
-			j++;
-		}
-		t.end();
-		System.out.println("10% : "+t.elapsedTime*1.0/j+" msec.");
+		//Load the array from a binary file of randomly generated numbers (see DatasetLoader to convert the text file)
+		int [] arr = DatasetLoader.load(args.length>0?args[0]:"C:\\Users\\shari\\Downloads\\128M.bin");
 
-		t.start();
-		j = 0;
-		//Query 20% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*40), (arr.length/100*60));
-			j++;
-		}
-		t.end();
-		System.out.println("20% : "+t.elapsedTime*1.0/j+" msec.");
+		//Calculate average pre-processing time over 10 builds, after 2 warm-up builds
+		Timer t = new Timer();
+		IntUnaryOperator build = x -> new HybridRMQ(arr).query(0, arr.length-1);
+		t.warmUp(2, build);
+		t.sample(10, build);
+		System.out.println("Preprocessing Time: "+t.mean()/1e6+" msec. p50: "+t.percentile(50)/1e6+" msec. Allocated: "+t.allocated()/10/1048576+" MB per build, GC: "+t.collections()+" collections");
 
-		t.start();
-		j = 0;
-		//Query 30% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*35), (arr.length/100*65));
-			j++;
-		}
-		t.end();
-		System.out.println("30% : "+t.elapsedTime*1.0/j+" msec.");
+		//Create an object of the HybridRMQ class
+		HybridRMQ hr = new HybridRMQ(arr);
 
-		t.start();
-		j = 0;
-		//Query 40% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*30), (arr.length/100*70));
-			j++;
-		}
-		t.end();
-		System.out.println("40% : "+t.elapsedTime*1.0/j+" msec.");
+		Random rand = new Random();
 
-		t.start();
-		j = 0;
-		//Query 50% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*25), (arr.length/100*75));
-			j++;
-		}
-		t.end();
-		System.out.println("50% : "+t.elapsedTime*1.0/j+" msec.");
+		//Uncomment to check correctness of the implementation
+		//		for(int x=0; x<10000; x++)
+		//		{
+		//			int i = rand.nextInt(arr.length);
+		//			int j = rand.nextInt(arr.length);
+		//			int result = hr.query(i, j);
+		//			if(result!=Integer.MAX_VALUE && result!=hr.min(hr.arr, i, j+1))
+		//			{
+		//				System.out.println("Incorrect result! Min in range ("+i+","+j+") is not "+result);
+		//			}
+		//		}
 
-		t.start();
-		j = 0;
-		//Query 60% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
+		//Calculate query time on 100000 random ranges, one sample per query after a warm-up pass
+		int [][] testCases = new int[100000][2];
+		for(int x=0; x<100000; x++)
 		{
-			hr.query((arr.length/100*20), (arr.length/100*80));
-			j++;
+			int i = rand.nextInt(arr.length);
+			int j = rand.nextInt(arr.length);
+			testCases[x][0] = Math.min(i, j);
+			testCases[x][1] = Math.max(i, j);
 		}
-		t.end();
-		System.out.println("60% : "+t.elapsedTime*1.0/j+" msec.");
+		IntUnaryOperator random = x -> hr.query(testCases[x][0], testCases[x][1]);
+		t.warmUp(100000, random);
+		t.sample(100000, random);
+		System.out.println("Query Time: "+t.summary());
 
-		t.start();
-		j = 0;
-		//Query 70% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
+		//Query 10%, 20%, ... 100% ranges centered in the HybridRMQ and print the time of execution
+		for(int p=10; p<=100; p+=10)
 		{
-			hr.query((arr.length/100*15), (arr.length/100*85));
-			j++;
+			int lo = arr.length/100*(50-p/2);
+			int hi = p==100?arr.length-1:arr.length/100*(50+p/2);
+			IntUnaryOperator fixed = x -> hr.query(lo, hi);
+			t.warmUp(100000, fixed);
+			t.sample(100000, fixed);
+			System.out.println(p+"% : "+t.summary());
 		}
-		t.end();
-		System.out.println("70% : "+t.elapsedTime*1.0/j+" msec.");
+	}
 
-		t.start();
-		j = 0;
-		//Query 80% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*10), (arr.length/100*90));
-			j++;
-		}
-		t.end();
-		System.out.println("80% : "+t.elapsedTime*1.0/j+" msec.");
+	/**
+	 * Check if the blocks at both ends of a query are scanned with the Vector API. BuildOptions.vectorScan(true)
+	 * falls back to the scalar scan when VectorBlockScanner is not on the classpath or the module
+	 * jdk.incubator.vector is not added, and this tells which scan is actually running.
+	 * 
+	 * @return		True if the SIMD scan is active, false if the scalar scan is used
+	 */
+	public boolean vectorScan()
+	{
+		return this.scanner!=BlockScanner.SCALAR;
+	}
 
-		t.start();
-		j = 0;
-		//Query 90% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*5), (arr.length/100*95));
-			j++;
-		}
-		t.end();
-		System.out.println("90% : "+t.elapsedTime*1.0/j+" msec.");
+	/**
+	 * Get the memory used by the top level, the sparse array or the recursive one over the block minima
+	 * 
+	 * @return		The size of the top level in bytes
+	 */
+	public long topLevelBytes()
+	{
+		return this.top!=null?this.top.indexBytes():BlockLayout.bytes(this.sparseArr);
+	}
 
-		t.start();
-		j = 0;
-		//Query 100% range in the HybridRMQ and print the average time of execution
-		for(int i=0; i<100000; i++)
-		{
-			hr.query((arr.length/100*0), (arr.length/100*100)-1);
-			j++;
-		}
-		t.end();
-		System.out.println("100% : "+t.elapsedTime*1.0/j+" msec.");
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays
+	 * and the recursive top level under the prefix top.
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint footprint = new MemoryFootprint("HybridRMQ")
+				.input(MemoryFootprint.arrayBytes(this.arr.length, Integer.BYTES))
+				.object("object", 5*Integer.BYTES, 7)
+				.array("minArr", this.minArr)
+				.array("minPosArr", this.minPosArr)
+				.jagged("sparseArr", this.sparseArr);
+		return this.top==null?footprint:footprint.include("top.", this.top.memoryFootprint());
 	}
 
 	/**
@@ -0,0 +1,301 @@
+package sxa190016;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Long Fischer-Heun RMQ: Short project 10
+ * 				Fischer-Heun RMQ structure for Minimum Range Query over a long array, with
+ * 				Fully-Preprocessed BlockRMQ at the bottom and Block-Minima RMQ at the top.
+ * 				It uses the block decomposition and the CartesianTypeTable of FischerHeunRMQ with
+ * 				the values kept as primitive longs.
+ * 				The structure is immutable once constructed, as long as the input array is not modified.
+ */
+public class LongFischerHeunRMQ {
+	/**
+	 * Store the size of the input array.
+	 */
+	private final int n;
+
+	/**
+	 * The input array
+	 */
+	private final long [] arr;
+
+	/**
+	 * The minimum array populated with the minimum of each block level RMQ
+	 */
+	private final long [] minArr;
+
+	/**
+	 * Position of the leftmost minimum of each block relative to the start of the block
+	 */
+	private final byte [] minPosArr;
+
+	/**
+	 * Sparse array to allow constant time search, holding the index of the block with the leftmost minimum
+	 */
+	private final int [][] sparseArr;
+
+	/**
+	 * Fully-Preprocessed tables of all the Cartesian Encodings present in the input
+	 */
+	private final CartesianTypeTable typeTable;
+
+	/**
+	 * Full preprocessing array to allow constant time search, the packed tables of typeTable
+	 */
+	private final byte [] fullPreProcessArr;
+
+	/**
+	 * Block RMQ to Full-Preprocess array offset mapping
+	 */
+	private final int [] blockToPreprocessMap;
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	private final int blockShift;
+
+	/**
+	 * Constructor to initialize the LongFischerHeunRMQ class
+	 *
+	 * @param arr	The input array to be queried
+	 */
+	public LongFischerHeunRMQ(long [] arr)
+	{
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the LongFischerHeunRMQ class with build options
+	 *
+	 * @param arr		The input array to be queried
+	 * @param options	The build options, e.g. a pool to build in parallel
+	 */
+	public LongFischerHeunRMQ(long [] arr, BuildOptions options)
+	{
+		this.n = arr.length;
+		this.arr = arr;
+
+		//Set optimal block size to log4(n)/2, rounded to a power of two if requested
+		int blockSize = BlockLayout.fischerHeunBlockSize(Math.max(this.n, 1));
+		this.blockSize = options.powerOfTwoBlocks()?BlockLayout.powerOfTwo(blockSize):blockSize;
+		this.blockShift = BlockLayout.shift(this.blockSize);
+		this.minArr = new long [this.n>0?BlockLayout.blocks(this.n, this.blockSize):0];
+		this.minPosArr = new byte [this.minArr.length];
+		this.sparseArr = new int [this.n>0?BlockLayout.levels(this.minArr.length):0][];
+		this.typeTable = new CartesianTypeTable(this.blockSize, this.minArr.length);
+		this.blockToPreprocessMap = new int [this.minArr.length];
+		if(this.n>0)
+		{
+			//Fill the minArray containing the minimum elements of each block
+			this.fillMinArr(options.pool());
+
+			//Fill the Sparse Table in a DP fashion
+			this.fillSparseArr(options.pool());
+		}
+		this.fullPreProcessArr = this.typeTable.tables();
+	}
+
+	/**
+	 * Helper method to find the minimum element and the table of each block
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillMinArr(ForkJoinPool pool)
+	{
+		//Find the minimum and the Cartesian Encoding of the blocks in parallel, with one stack per chunk
+		ParallelBuild.forRange(pool, 0, this.minArr.length, (from, to) -> {
+			long [] stack = new long [this.blockSize];
+			for(int i=from; i<to; i++)
+			{
+				int start = i*this.blockSize;
+				int end = Math.min(start+this.blockSize, this.n);
+				int minIndex = start;
+				for(int x=start+1; x<end; x++)
+				{
+					if(this.arr[x]<this.arr[minIndex])
+					{
+						minIndex = x;
+					}
+				}
+				this.minArr[i] = this.arr[minIndex];
+				this.minPosArr[i] = (byte) (minIndex-start);
+				this.blockToPreprocessMap[i] = CartesianTypeTable.encode(this.arr, start, end-1, stack);
+			}
+		});
+
+		//Replace the encodings by table offsets in block order, so that the tables are laid out as in a sequential build
+		for(int i=0; i<this.minArr.length; i++)
+		{
+			int start = i*this.blockSize;
+			this.blockToPreprocessMap[i] = this.typeTable.offsetOf(this.blockToPreprocessMap[i], (a, b) -> this.arr[a]<this.arr[b], start, Math.min(start+this.blockSize, this.n)-1);
+		}
+	}
+
+	/**
+	 * Helper method to fill the sparseArray in a DP fashion
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillSparseArr(ForkJoinPool pool)
+	{
+		int [] first = new int [this.minArr.length];
+		ParallelBuild.forRange(pool, 0, first.length, (from, to) -> {
+			for(int j=from; j<to; j++)
+			{
+				first[j] = j;
+			}
+		});
+		this.sparseArr[0] = first;
+		for(int i=1; i<this.sparseArr.length; i++)
+		{
+			this.sparseArr[i] = new int [BlockLayout.levelSize(this.minArr.length, i)];
+			int [] prev = this.sparseArr[i-1];
+			int [] level = this.sparseArr[i];
+			int half = 1<<(i-1);
+			ParallelBuild.forRange(pool, 0, level.length, (from, to) -> {
+				for(int j=from; j<to; j++)
+				{
+					int left = prev[j];
+					int right = prev[Math.min(j+half, prev.length-1)];
+					level[j] = this.minArr[left]<=this.minArr[right]?left:right;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time
+	 *
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public int queryMinRMQIndex(int i, int j)
+	{
+		int k = BlockLayout.log2(j-i+1);
+		int left = this.sparseArr[k][i];
+		int right = this.sparseArr[k][j-(1<<k)+1];
+		return this.minArr[left]<=this.minArr[right]?left:right;
+	}
+
+	/**
+	 * The main method to query the Long Fischer-Heun RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range, Long.MAX_VALUE if the range is invalid
+	 */
+	public long query(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.arr[this.queryFullPreprocTblIndex(bi, i, j)];
+			}
+			long result = Math.min(this.arr[this.queryFullPreprocTblIndex(bi, i, (bi+1)*this.blockSize-1)], this.arr[this.queryFullPreprocTblIndex(bj, bj*this.blockSize, j)]);
+			if(bi+1<bj)
+			{
+				result = Math.min(result, this.minArr[this.queryMinRMQIndex(bi+1, bj-1)]);
+			}
+			return result;
+		}
+		else
+		{
+			//Return max value if input is not in the correct format
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Long Fischer-Heun RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.queryFullPreprocTblIndex(bi, i, j);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			int result = this.queryFullPreprocTblIndex(bi, i, (bi+1)*this.blockSize-1);
+			if(bi+1<bj)
+			{
+				int block = this.queryMinRMQIndex(bi+1, bj-1);
+				int top = block*this.blockSize+this.minPosArr[block];
+				result = this.arr[top]<this.arr[result]?top:result;
+			}
+			int right = this.queryFullPreprocTblIndex(bj, bj*this.blockSize, j);
+			return this.arr[right]<this.arr[result]?right:result;
+		}
+		else
+		{
+			//Return -1 if input is not in the correct format
+			return -1;
+		}
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 *
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private int blockOf(int i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
+
+	/**
+	 * Method to find the position of the leftmost minimum element in a given range in Block RMQ
+	 *
+	 * @param block	The index of the block
+	 * @param start	The start index of the range, in the block
+	 * @param end	The end index of the range, in the block
+	 * @return		The index of the leftmost minimum element in the range
+	 */
+	private int queryFullPreprocTblIndex(int block, int start, int end)
+	{
+		int i = start-(block*this.blockSize);
+		int j = end-start;
+		return (block*this.blockSize)+this.fullPreProcessArr[this.blockToPreprocessMap[block]+i*this.blockSize-i*(i-1)/2+j];
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays
+	 * and the number of materialised Cartesian types
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint footprint = new MemoryFootprint("LongFischerHeunRMQ")
+				.input(MemoryFootprint.arrayBytes(this.arr.length, Long.BYTES))
+				.object("object", 3*Integer.BYTES, 7)
+				.array("minArr", this.minArr.length, Long.BYTES)
+				.array("minPosArr", this.minPosArr)
+				.jagged("sparseArr", this.sparseArr)
+				.array("blockToPreprocessMap", this.blockToPreprocessMap);
+		this.typeTable.footprint(footprint);
+		return footprint;
+	}
+}
@@ -0,0 +1,35 @@
+package sxa190016;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Long Range Minimum Query: Short project 10
+ * 				Common type of the RMQ structures over an OffHeapIntArray, whose ranges are given
+ * 				by long indices so that inputs of more than 2^31 elements can be queried.
+ */
+public interface LongRangeMinQuery {
+	/**
+	 * Query the minimum element in the range [i, j] of the input array
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range, Integer.MAX_VALUE if the range is invalid
+	 */
+	int query(long i, long j);
+
+	/**
+	 * Query the position of the leftmost minimum element in the range [i, j] of the input array
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	long queryIndex(long i, long j);
+
+	/**
+	 * Get the bytes used by each component of the structure, on and off the heap
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	MemoryFootprint memoryFootprint();
+}
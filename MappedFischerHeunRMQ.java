@@ -0,0 +1,335 @@
+package sxa190016;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Mapped Fischer-Heun RMQ: Short project 10
+ * 				Fischer-Heun RMQ structure queried in place from a memory-mapped snapshot
+ * 				written by FischerHeunRMQ.save(), without rebuilding or deserialising it.
+ * 				The pages are mapped read-only so they are shared by all the processes
+ * 				mapping the same snapshot.
+ *
+ * 				Snapshot layout (little-endian ints, then bytes):
+ * 				header		MAGIC, VERSION, n, blockSize, minArr.length, sparseArr.length, table bytes, order mask
+ * 				arr			n ints
+ * 				minArr		minArr.length ints
+ * 				sparseArr	one section per level, level i holding max(minArr.length-2^i+1, 1) block indices
+ * 				blockMap	minArr.length ints, the offset of the table of each block
+ * 				minPosArr	minArr.length bytes, the position of the minimum in each block
+ * 				tables		the packed Fully-Preprocessed tables of CartesianTypeTable
+ */
+public class MappedFischerHeunRMQ implements RangeMinQuery {
+	/**
+	 * Magic number identifying a snapshot file ("FHRQ")
+	 */
+	static final int MAGIC = 0x46485251;
+
+	/**
+	 * Version of the snapshot layout
+	 */
+	static final int VERSION = 4;
+
+	/**
+	 * Number of ints in the header
+	 */
+	private static final int HEADER_INTS = 8;
+
+	/**
+	 * Store the size of the input array.
+	 */
+	private final int n;
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	private final int blockShift;
+
+	/**
+	 * Order of the elements, 0 for the minimum and -1 for the maximum, see FischerHeunRMQ
+	 */
+	private final int mask;
+
+	/**
+	 * The input array
+	 */
+	private final IntBuffer arr;
+
+	/**
+	 * The minimum array populated with the minimum of each block level RMQ
+	 */
+	private final IntBuffer minArr;
+
+	/**
+	 * Position of the leftmost minimum of each block relative to the start of the block
+	 */
+	private final ByteBuffer minPosArr;
+
+	/**
+	 * Sparse array to allow constant time search, holding the index of the block with the leftmost minimum
+	 */
+	private final IntBuffer [] sparseArr;
+
+	/**
+	 * Block RMQ to Fully-Preprocessed table offset mapping
+	 */
+	private final IntBuffer blockToTable;
+
+	/**
+	 * Fully-Preprocessed tables of all the Cartesian Encodings present in the input
+	 */
+	private final ByteBuffer tables;
+
+	/**
+	 * Constructor to map a snapshot written by FischerHeunRMQ.save()
+	 *
+	 * @param path			The path of the snapshot file
+	 * @throws IOException	If the file cannot be mapped or is not a valid snapshot
+	 */
+	public MappedFischerHeunRMQ(String path) throws IOException
+	{
+		try(FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+		{
+			if(ch.size()<HEADER_INTS*Integer.BYTES)
+			{
+				throw new IOException("Not a FischerHeunRMQ snapshot: "+path);
+			}
+			IntBuffer header = map(ch, 0, HEADER_INTS);
+			if(header.get(0)!=MAGIC || header.get(1)!=VERSION)
+			{
+				throw new IOException("Not a FischerHeunRMQ snapshot of version "+VERSION+": "+path);
+			}
+			this.n = header.get(2);
+			this.blockSize = header.get(3);
+			this.blockShift = BlockLayout.shift(this.blockSize);
+			int m = header.get(4);
+			int levels = header.get(5);
+			int tableBytes = header.get(6);
+			this.mask = header.get(7);
+
+			//An empty snapshot maps empty sections
+			long offset = HEADER_INTS;
+			this.arr = map(ch, offset, this.n);
+			offset += this.n;
+			this.minArr = map(ch, offset, m);
+			offset += m;
+			this.sparseArr = new IntBuffer [levels];
+			for(int i=0; i<levels; i++)
+			{
+				int size = BlockLayout.levelSize(m, i);
+				this.sparseArr[i] = map(ch, offset, size);
+				offset += size;
+			}
+			this.blockToTable = map(ch, offset, m);
+			offset += m;
+			this.minPosArr = ch.map(FileChannel.MapMode.READ_ONLY, offset*Integer.BYTES, m);
+			this.tables = ch.map(FileChannel.MapMode.READ_ONLY, offset*Integer.BYTES+m, tableBytes);
+			offset = offset*Integer.BYTES+m+tableBytes;
+			if(offset!=ch.size())
+			{
+				throw new IOException("Truncated or corrupt FischerHeunRMQ snapshot: "+path);
+			}
+		}
+	}
+
+	/**
+	 * Helper method to map a section of ints of the snapshot
+	 *
+	 * @param ch			The channel of the snapshot file
+	 * @param offset		The offset of the section in ints
+	 * @param length		The length of the section in ints
+	 * @return				A read-only view of the section
+	 * @throws IOException	If the section cannot be mapped
+	 */
+	private static IntBuffer map(FileChannel ch, long offset, long length) throws IOException
+	{
+		if(length*Integer.BYTES>Integer.MAX_VALUE || (offset+length)*Integer.BYTES>ch.size())
+		{
+			throw new IOException("Snapshot section of "+length+" ints at "+offset+" cannot be mapped");
+		}
+		return ch.map(FileChannel.MapMode.READ_ONLY, offset*Integer.BYTES, length*Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	/**
+	 * Helper method to query the Block-Minima RMQ (Sparse Array) structure in constant time
+	 *
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The minimum element in the range
+	 */
+	private int queryMinRMQ(int i, int j)
+	{
+		return this.minArr.get(this.queryMinRMQIndex(i, j));
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time
+	 *
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	private int queryMinRMQIndex(int i, int j)
+	{
+		int k = BlockLayout.log2(j-i+1);
+		int left = this.sparseArr[k].get(i);
+		int right = this.sparseArr[k].get(j-(1<<k)+1);
+		return (this.minArr.get(left)^this.mask)<=(this.minArr.get(right)^this.mask)?left:right;
+	}
+
+	/**
+	 * The main method to query the mapped Fischer-Heun RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	public int query(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			//Split the range into the BlockLevel RMQ of the blocks of i and j and the TopLevel Block-Minima RMQ between them
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.queryFullPreprocTbl(bi, i, j);
+			}
+			int result = this.first(this.queryFullPreprocTbl(bi, i, (bi+1)*this.blockSize-1), this.queryFullPreprocTbl(bj, bj*this.blockSize, j));
+			if(bi+1<bj)
+			{
+				result = this.first(result, this.queryMinRMQ(bi+1, bj-1));
+			}
+			return result;
+		}
+		else
+		{
+			//Return max value if input is not in the correct format
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the mapped Fischer-Heun RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.queryFullPreprocTblIndex(bi, i, j);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			int result = this.queryFullPreprocTblIndex(bi, i, (bi+1)*this.blockSize-1);
+			if(bi+1<bj)
+			{
+				int block = this.queryMinRMQIndex(bi+1, bj-1);
+				int top = block*this.blockSize+this.minPosArr.get(block);
+				result = (this.arr.get(top)^this.mask)<(this.arr.get(result)^this.mask)?top:result;
+			}
+			int right = this.queryFullPreprocTblIndex(bj, bj*this.blockSize, j);
+			return (this.arr.get(right)^this.mask)<(this.arr.get(result)^this.mask)?right:result;
+		}
+		else
+		{
+			//Return -1 if input is not in the correct format
+			return -1;
+		}
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 *
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private int blockOf(int i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
+
+	/**
+	 * Helper method to find the first of two elements in the order of the structure
+	 *
+	 * @param a		The first element
+	 * @param b		The second element
+	 * @return		The minimum of the two elements, or the maximum if the structure queries the maximum
+	 */
+	private int first(int a, int b)
+	{
+		return (b^this.mask)<(a^this.mask)?b:a;
+	}
+
+	/**
+	 * Method to find the minimum element in a given range in Block RMQ
+	 *
+	 * @param block	The index of the block RMQ
+	 * @param start	The start index of the range
+	 * @param end	The last index of the range
+	 * @return		The minimum element in a given range in Block RMQ
+	 */
+	private int queryFullPreprocTbl(int block, int start, int end)
+	{
+		return this.arr.get(this.queryFullPreprocTblIndex(block, start, end));
+	}
+
+	/**
+	 * Method to find the position of the leftmost minimum element in a given range in Block RMQ
+	 *
+	 * @param block	The index of the block RMQ
+	 * @param start	The start index of the range
+	 * @param end	The last index of the range
+	 * @return		The index of the leftmost minimum element in a given range in Block RMQ
+	 */
+	private int queryFullPreprocTblIndex(int block, int start, int end)
+	{
+		int i = start-(block*this.blockSize);
+		int j = end-start;
+		int minIndex = this.tables.get(this.blockToTable.get(block)+i*this.blockSize-i*(i-1)/2+j);
+		return (block*this.blockSize)+minIndex;
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure. The sections of the snapshot are mapped
+	 * outside the heap, the input array among them, and the number of materialised Cartesian types
+	 * follows from the size of the tables section.
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint footprint = new MemoryFootprint("MappedFischerHeunRMQ")
+				.input((long) this.arr.capacity()*Integer.BYTES)
+				.object("object", 4*Integer.BYTES, 6)
+				.array("sparseArr buffers", this.sparseArr.length, MemoryFootprint.REFERENCE)
+				.offHeap("minArr", (long) this.minArr.capacity()*Integer.BYTES);
+		for(IntBuffer level : this.sparseArr)
+		{
+			footprint.offHeap("sparseArr", (long) level.capacity()*Integer.BYTES);
+		}
+		return footprint.offHeap("blockToPreprocessMap", (long) this.blockToTable.capacity()*Integer.BYTES)
+				.offHeap("minPosArr", this.minPosArr.capacity())
+				.offHeap("fullPreProcessArr", this.tables.capacity())
+				.cartesianTypes(this.tables.capacity()/(this.blockSize*(this.blockSize+1)/2), this.blockSize);
+	}
+}
@@ -0,0 +1,512 @@
+package sxa190016;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Memory Footprint: Short project 10
+ * 				Bytes used by each component of an RMQ structure, returned by memoryFootprint(), to
+ * 				choose the engine and the block size of a dataset.
+ *
+ * 				Every array is counted with its header and its padding to the object alignment, and
+ * 				a jagged array such as the sparse array with its outer array of references and the
+ * 				header of every level, so the report adds up to what the heap actually holds rather
+ * 				than to the payload alone. The sizes of the headers and references are read from the
+ * 				running JVM (compressed oops and class pointers, object alignment). The input array is
+ * 				reported on its own and not counted in the total, as it belongs to the caller.
+ * 				Off-heap buffers, direct or mapped, are counted in the total but reported apart from
+ * 				the heap. For the structures with Fully-Preprocessed tables the report also holds the
+ * 				number of distinct Cartesian types materialised out of the 4^blockSize encodings.
+ */
+public final class MemoryFootprint {
+	/**
+	 * True if the JVM stores the class of an object in 4 bytes
+	 */
+	private static final boolean COMPRESSED_CLASS_POINTERS = vmFlag("UseCompressedClassPointers", true);
+
+	/**
+	 * Size of a reference in bytes
+	 */
+	static final int REFERENCE = vmFlag("UseCompressedOops", true)?4:8;
+
+	/**
+	 * Size of the header of an object in bytes, the mark word and the class pointer
+	 */
+	static final int OBJECT_HEADER = COMPRESSED_CLASS_POINTERS?12:16;
+
+	/**
+	 * Size of the header of an array in bytes, the object header and the length
+	 */
+	static final int ARRAY_HEADER = COMPRESSED_CLASS_POINTERS?16:24;
+
+	/**
+	 * Alignment of every object on the heap in bytes
+	 */
+	static final int ALIGNMENT = (int) vmLong("ObjectAlignmentInBytes", 8);
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Memory Footprint: Short project 10
+	 * 				Size of one component, with the part of it taken by headers, references and padding
+	 */
+	private static final class Component {
+		/**
+		 * Total size in bytes
+		 */
+		private long bytes;
+
+		/**
+		 * Bytes of headers, references and padding
+		 */
+		private long overhead;
+
+		/**
+		 * True if the component lives outside the heap
+		 */
+		private final boolean offHeap;
+
+		/**
+		 * Constructor to initialize an empty component
+		 *
+		 * @param offHeap	True if the component lives outside the heap
+		 */
+		private Component(boolean offHeap)
+		{
+			this.offHeap = offHeap;
+		}
+	}
+
+	/**
+	 * Name of the structure
+	 */
+	private final String structure;
+
+	/**
+	 * Components in the order they were added
+	 */
+	private final Map<String, Component> components = new LinkedHashMap<>();
+
+	/**
+	 * Bytes of the input array, not counted in the total
+	 */
+	private long inputBytes;
+
+	/**
+	 * Number of materialised Cartesian types, -1 if the structure has no Fully-Preprocessed tables
+	 */
+	private long cartesianTypes = -1;
+
+	/**
+	 * Block size of the Fully-Preprocessed tables, 0 if the structure has none
+	 */
+	private int blockSize;
+
+	/**
+	 * Constructor to initialize an empty report
+	 *
+	 * @param structure		The name of the structure
+	 */
+	MemoryFootprint(String structure)
+	{
+		this.structure = structure;
+	}
+
+	/**
+	 * Get the size of an array on the heap
+	 *
+	 * @param length		The number of elements
+	 * @param elementBytes	The size of an element in bytes
+	 * @return				The size of the array with its header and padding in bytes
+	 */
+	static long arrayBytes(long length, int elementBytes)
+	{
+		return align(ARRAY_HEADER+length*elementBytes);
+	}
+
+	/**
+	 * Get the size of an object on the heap
+	 *
+	 * @param primitiveBytes	The bytes of its primitive fields
+	 * @param references		The number of its reference fields
+	 * @return					The size of the object with its header and padding in bytes
+	 */
+	static long objectBytes(int primitiveBytes, int references)
+	{
+		return align(OBJECT_HEADER+primitiveBytes+(long) references*REFERENCE);
+	}
+
+	/**
+	 * Helper method to round a size up to the object alignment
+	 *
+	 * @param bytes		The size in bytes
+	 * @return			The size rounded up to a multiple of ALIGNMENT
+	 */
+	private static long align(long bytes)
+	{
+		return (bytes+ALIGNMENT-1)/ALIGNMENT*ALIGNMENT;
+	}
+
+	/**
+	 * Helper method to add bytes to a component
+	 *
+	 * @param name		The name of the component
+	 * @param bytes		The size in bytes
+	 * @param overhead	The bytes of headers, references and padding among them
+	 * @param offHeap	True if the component lives outside the heap
+	 * @return			This report
+	 */
+	private MemoryFootprint add(String name, long bytes, long overhead, boolean offHeap)
+	{
+		Component c = this.components.computeIfAbsent(name, k -> new Component(offHeap));
+		c.bytes += bytes;
+		c.overhead += overhead;
+		return this;
+	}
+
+	/**
+	 * Add the object of the structure or of one of its helpers
+	 *
+	 * @param name				The name of the component
+	 * @param primitiveBytes	The bytes of its primitive fields
+	 * @param references		The number of its reference fields
+	 * @return					This report
+	 */
+	MemoryFootprint object(String name, int primitiveBytes, int references)
+	{
+		long bytes = objectBytes(primitiveBytes, references);
+		return this.add(name, bytes, bytes-primitiveBytes, false);
+	}
+
+	/**
+	 * Add an array on the heap
+	 *
+	 * @param name			The name of the component
+	 * @param length		The number of elements
+	 * @param elementBytes	The size of an element in bytes
+	 * @return				This report
+	 */
+	MemoryFootprint array(String name, long length, int elementBytes)
+	{
+		long bytes = arrayBytes(length, elementBytes);
+		return this.add(name, bytes, bytes-length*elementBytes, false);
+	}
+
+	/**
+	 * Add an int array on the heap, nothing if it is null
+	 *
+	 * @param name		The name of the component
+	 * @param arr		The array
+	 * @return			This report
+	 */
+	MemoryFootprint array(String name, int [] arr)
+	{
+		return arr==null?this:this.array(name, arr.length, Integer.BYTES);
+	}
+
+	/**
+	 * Add a byte array on the heap, nothing if it is null
+	 *
+	 * @param name		The name of the component
+	 * @param arr		The array
+	 * @return			This report
+	 */
+	MemoryFootprint array(String name, byte [] arr)
+	{
+		return arr==null?this:this.array(name, arr.length, Byte.BYTES);
+	}
+
+	/**
+	 * Add a long array on the heap, nothing if it is null
+	 *
+	 * @param name		The name of the component
+	 * @param arr		The array
+	 * @return			This report
+	 */
+	MemoryFootprint array(String name, long [] arr)
+	{
+		return arr==null?this:this.array(name, arr.length, Long.BYTES);
+	}
+
+	/**
+	 * Add a jagged int array on the heap: the outer array of references and every level with its header
+	 *
+	 * @param name		The name of the component
+	 * @param arr		The jagged array
+	 * @return			This report
+	 */
+	MemoryFootprint jagged(String name, int [][] arr)
+	{
+		this.array(name, arr.length, REFERENCE);
+		this.components.get(name).overhead += (long) arr.length*REFERENCE;
+		for(int [] level : arr)
+		{
+			this.array(name, level);
+		}
+		return this;
+	}
+
+	/**
+	 * Add a buffer outside the heap, direct or mapped
+	 *
+	 * @param name		The name of the component
+	 * @param bytes		The size of the buffer in bytes
+	 * @return			This report
+	 */
+	MemoryFootprint offHeap(String name, long bytes)
+	{
+		return this.add(name, bytes, 0, true);
+	}
+
+	/**
+	 * Set the size of the input array, not counted in the total
+	 *
+	 * @param bytes		The size of the input array in bytes
+	 * @return			This report
+	 */
+	MemoryFootprint input(long bytes)
+	{
+		this.inputBytes = bytes;
+		return this;
+	}
+
+	/**
+	 * Set the number of materialised Cartesian types
+	 *
+	 * @param types		The number of distinct Cartesian types with a table
+	 * @param blockSize	The block size of the tables
+	 * @return			This report
+	 */
+	MemoryFootprint cartesianTypes(long types, int blockSize)
+	{
+		this.cartesianTypes = types;
+		this.blockSize = blockSize;
+		return this;
+	}
+
+	/**
+	 * Add every component of a nested structure under a prefix, without its input array,
+	 * which is a component of this structure, and its Cartesian types if this structure has none
+	 *
+	 * @param prefix	The prefix of the names of the nested components
+	 * @param part		The report of the nested structure
+	 * @return			This report
+	 */
+	MemoryFootprint include(String prefix, MemoryFootprint part)
+	{
+		for(Map.Entry<String, Component> e : part.components.entrySet())
+		{
+			Component c = e.getValue();
+			this.add(prefix+e.getKey(), c.bytes, c.overhead, c.offHeap);
+		}
+		if(this.cartesianTypes<0 && part.cartesianTypes>=0)
+		{
+			this.cartesianTypes(part.cartesianTypes, part.blockSize);
+		}
+		return this;
+	}
+
+	/**
+	 * Get the name of the structure
+	 *
+	 * @return		The name of the structure
+	 */
+	public String structure()
+	{
+		return this.structure;
+	}
+
+	/**
+	 * Get the size of every component
+	 *
+	 * @return		The bytes of each component, in the order they were added
+	 */
+	public Map<String, Long> components()
+	{
+		Map<String, Long> result = new LinkedHashMap<>();
+		for(Map.Entry<String, Component> e : this.components.entrySet())
+		{
+			result.put(e.getKey(), e.getValue().bytes);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the size of a component
+	 *
+	 * @param name	The name of the component
+	 * @return		The size of the component in bytes, 0 if the structure has no such component
+	 */
+	public long bytes(String name)
+	{
+		Component c = this.components.get(name);
+		return c==null?0:c.bytes;
+	}
+
+	/**
+	 * Get the size of the structure on the heap
+	 *
+	 * @return		The bytes of the components on the heap, without the input array
+	 */
+	public long heapBytes()
+	{
+		long sum = 0;
+		for(Component c : this.components.values())
+		{
+			sum += c.offHeap?0:c.bytes;
+		}
+		return sum;
+	}
+
+	/**
+	 * Get the size of the structure outside the heap
+	 *
+	 * @return		The bytes of the direct and mapped components, without the input array
+	 */
+	public long offHeapBytes()
+	{
+		long sum = 0;
+		for(Component c : this.components.values())
+		{
+			sum += c.offHeap?c.bytes:0;
+		}
+		return sum;
+	}
+
+	/**
+	 * Get the bytes taken by object and array headers, references and padding
+	 *
+	 * @return		The overhead of all the components in bytes
+	 */
+	public long overheadBytes()
+	{
+		long sum = 0;
+		for(Component c : this.components.values())
+		{
+			sum += c.overhead;
+		}
+		return sum;
+	}
+
+	/**
+	 * Get the size of the structure
+	 *
+	 * @return		The bytes of all the components, on and off the heap, without the input array
+	 */
+	public long total()
+	{
+		return this.heapBytes()+this.offHeapBytes();
+	}
+
+	/**
+	 * Get the size of the input array
+	 *
+	 * @return		The size of the input array in bytes
+	 */
+	public long inputBytes()
+	{
+		return this.inputBytes;
+	}
+
+	/**
+	 * Get the number of distinct Cartesian types with a Fully-Preprocessed table
+	 *
+	 * @return		The number of materialised Cartesian types, -1 if the structure has no such tables
+	 */
+	public long cartesianTypes()
+	{
+		return this.cartesianTypes;
+	}
+
+	/**
+	 * Get the number of Cartesian Encodings of a block, 4^blockSize, of which at most Catalan(blockSize)
+	 * are valid encodings of a full block
+	 *
+	 * @return		The number of possible Cartesian Encodings, -1 if the structure has no such tables
+	 */
+	public long possibleCartesianTypes()
+	{
+		return this.cartesianTypes<0?-1:1L<<(2*this.blockSize);
+	}
+
+	/**
+	 * Report every component, the totals and the Cartesian types
+	 *
+	 * @return		The report, one line per component
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(this.structure).append(String.format(" total: %,d bytes (heap %,d, off-heap %,d, headers and padding %,d), input: %,d bytes%n",
+				this.total(), this.heapBytes(), this.offHeapBytes(), this.overheadBytes(), this.inputBytes));
+		for(Map.Entry<String, Component> e : this.components.entrySet())
+		{
+			Component c = e.getValue();
+			sb.append(String.format("  %-28s %,16d bytes  %5.1f%%  overhead %,d%s%n", e.getKey(), c.bytes, this.total()==0?0:100.0*c.bytes/this.total(),
+					c.overhead, c.offHeap?"  (off-heap)":""));
+		}
+		if(this.cartesianTypes>=0)
+		{
+			sb.append(String.format("  Cartesian types: %,d of %,d encodings (at most %,d full-block types for block size %d)%n",
+					this.cartesianTypes, this.possibleCartesianTypes(), CartesianTypeTable.catalan(this.blockSize), this.blockSize));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Helper method to read a boolean flag of the running JVM
+	 *
+	 * @param name		The name of the flag
+	 * @param fallback	The value if the flag cannot be read
+	 * @return			The value of the flag
+	 */
+	private static boolean vmFlag(String name, boolean fallback)
+	{
+		String value = vmOption(name);
+		return value==null?fallback:Boolean.parseBoolean(value);
+	}
+
+	/**
+	 * Helper method to read a numeric flag of the running JVM
+	 *
+	 * @param name		The name of the flag
+	 * @param fallback	The value if the flag cannot be read
+	 * @return			The value of the flag
+	 */
+	private static long vmLong(String name, long fallback)
+	{
+		String value = vmOption(name);
+		try
+		{
+			return value==null?fallback:Long.parseLong(value);
+		}
+		catch(NumberFormatException e)
+		{
+			return fallback;
+		}
+	}
+
+	/**
+	 * Helper method to read a flag of the running JVM through its diagnostic bean
+	 *
+	 * @param name		The name of the flag
+	 * @return			The value of the flag, null if the JVM does not provide it
+	 */
+	private static String vmOption(String name)
+	{
+		try
+		{
+			return ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption(name).getValue();
+		}
+		catch(RuntimeException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package sxa190016;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Min-Max RMQ: Short project 10
+ * 				Hybrid 1 RMQ structure answering the range minimum and the range maximum together,
+ * 				with BlockRMQ at the bottom and Block-Minima/Maxima RMQ at the top, built in one pass.
+ *
+ * 				The minimum and the maximum of the same range are stored next to each other: entry 2*j
+ * 				of the block array and of every level of the sparse array holds the minimum of block or
+ * 				range j and entry 2*j+1 its maximum. A query then reads both from the same cache lines
+ * 				and returns them packed in one long, see minOf() and maxOf().
+ * 				The structure is immutable once constructed, as long as the input array is not modified.
+ */
+public class MinMaxRMQ {
+	/**
+	 * Store the size of the input array.
+	 */
+	private final int n;
+
+	/**
+	 * The input array
+	 */
+	private final int [] arr;
+
+	/**
+	 * Number of blocks
+	 */
+	private final int blocks;
+
+	/**
+	 * Sparse array of the minimum and maximum values of every range of 2^k blocks, interleaved.
+	 * Level 0 holds the minimum and the maximum of each block.
+	 */
+	private final int [][] sparseArr;
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	private final int blockShift;
+
+	/**
+	 * Constructor to initialize the MinMaxRMQ class
+	 *
+	 * @param arr	The input array to be queried
+	 */
+	public MinMaxRMQ(int [] arr)
+	{
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the MinMaxRMQ class with build options
+	 *
+	 * @param arr		The input array to be queried
+	 * @param options	The build options, e.g. a pool to build in parallel. The order is ignored.
+	 */
+	public MinMaxRMQ(int [] arr, BuildOptions options)
+	{
+		this.n = arr.length;
+		this.arr = arr;
+
+		//Set optimal block size to log2(n), rounded to a power of two if requested
+		int blockSize = BlockLayout.hybridBlockSize(Math.max(this.n, 1));
+		this.blockSize = options.powerOfTwoBlocks()?BlockLayout.powerOfTwo(blockSize):blockSize;
+		this.blockShift = BlockLayout.shift(this.blockSize);
+		this.blocks = this.n>0?BlockLayout.blocks(this.n, this.blockSize):0;
+		this.sparseArr = new int [this.n>0?BlockLayout.levels(this.blocks):0][];
+		if(this.n>0)
+		{
+			//Fill the level 0 with the minimum and maximum elements of each block
+			this.fillMinArr(options.pool());
+
+			//Fill the Sparse Table in a DP fashion
+			this.fillSparseArr(options.pool());
+		}
+	}
+
+	/**
+	 * Helper method to find the minimum and the maximum element of each block in one scan
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillMinArr(ForkJoinPool pool)
+	{
+		int [] minMaxArr = new int [2*this.blocks];
+		ParallelBuild.forRange(pool, 0, this.blocks, (from, to) -> {
+			for(int i=from; i<to; i++)
+			{
+				int start = i*this.blockSize;
+				long minMax = this.scan(start, Math.min(start+this.blockSize, this.n));
+				minMaxArr[2*i] = minOf(minMax);
+				minMaxArr[2*i+1] = maxOf(minMax);
+			}
+		});
+		this.sparseArr[0] = minMaxArr;
+	}
+
+	/**
+	 * Helper method to fill the sparseArray in a DP fashion, the minimum and the maximum of a range together
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillSparseArr(ForkJoinPool pool)
+	{
+		for(int i=1; i<this.sparseArr.length; i++)
+		{
+			int [] prev = this.sparseArr[i-1];
+			int [] level = new int [2*BlockLayout.levelSize(this.blocks, i)];
+			int half = 1<<(i-1);
+			int last = prev.length/2-1;
+			ParallelBuild.forRange(pool, 0, level.length/2, (from, to) -> {
+				for(int j=from; j<to; j++)
+				{
+					int right = 2*Math.min(j+half, last);
+					level[2*j] = Math.min(prev[2*j], prev[right]);
+					level[2*j+1] = Math.max(prev[2*j+1], prev[right+1]);
+				}
+			});
+			this.sparseArr[i] = level;
+		}
+	}
+
+	/**
+	 * Query the minimum and the maximum element in the range [i, j]
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum and the maximum packed in a long, see minOf() and maxOf().
+	 * 				Integer.MAX_VALUE and Integer.MIN_VALUE if the range is invalid
+	 */
+	public long query(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = this.blockOf(i);
+			int bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.scan(i, j+1);
+			}
+			long left = this.scan(i, (bi+1)*this.blockSize);
+			long right = this.scan(bj*this.blockSize, j+1);
+			int min = Math.min(minOf(left), minOf(right));
+			int max = Math.max(maxOf(left), maxOf(right));
+			if(bi+1<bj)
+			{
+				//Both values of a sparse array entry are in the same cache line
+				int k = BlockLayout.log2(bj-bi-1);
+				int [] level = this.sparseArr[k];
+				int l = 2*(bi+1);
+				int r = 2*(bj-(1<<k));
+				min = Math.min(min, Math.min(level[l], level[r]));
+				max = Math.max(max, Math.max(level[l+1], level[r+1]));
+			}
+			return pack(min, max);
+		}
+		else
+		{
+			//Return the empty range if input is not in the correct format
+			return pack(Integer.MAX_VALUE, Integer.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * Query the minimum element in the range [i, j]
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range, Integer.MAX_VALUE if the range is invalid
+	 */
+	public int queryMin(int i, int j)
+	{
+		return minOf(this.query(i, j));
+	}
+
+	/**
+	 * Query the maximum element in the range [i, j]
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The maximum element in the given range, Integer.MIN_VALUE if the range is invalid
+	 */
+	public int queryMax(int i, int j)
+	{
+		return maxOf(this.query(i, j));
+	}
+
+	/**
+	 * Helper method to find the minimum and the maximum element of the input array in a given range in one scan
+	 *
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range
+	 * @return			The minimum and the maximum packed in a long
+	 */
+	private long scan(int start, int end)
+	{
+		int min = this.arr[start];
+		int max = min;
+		for(int i=start+1; i<end; i++)
+		{
+			int val = this.arr[i];
+			min = Math.min(min, val);
+			max = Math.max(max, val);
+		}
+		return pack(min, max);
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 *
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private int blockOf(int i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
+
+	/**
+	 * Pack a minimum and a maximum in a long
+	 *
+	 * @param min	The minimum, in the high 32 bits
+	 * @param max	The maximum, in the low 32 bits
+	 * @return		The packed minimum and maximum
+	 */
+	static long pack(int min, int max)
+	{
+		return ((long) min<<32)|(max&0xFFFFFFFFL);
+	}
+
+	/**
+	 * Get the minimum of a result of query()
+	 *
+	 * @param minMax	The packed minimum and maximum
+	 * @return			The minimum
+	 */
+	public static int minOf(long minMax)
+	{
+		return (int) (minMax>>32);
+	}
+
+	/**
+	 * Get the maximum of a result of query()
+	 *
+	 * @param minMax	The packed minimum and maximum
+	 * @return			The maximum
+	 */
+	public static int maxOf(long minMax)
+	{
+		return (int) minMax;
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		return new MemoryFootprint("MinMaxRMQ")
+				.input(MemoryFootprint.arrayBytes(this.arr.length, Integer.BYTES))
+				.object("object", 4*Integer.BYTES, 2)
+				.jagged("sparseArr", this.sparseArr);
+	}
+}
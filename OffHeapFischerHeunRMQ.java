@@ -0,0 +1,368 @@
+package sxa190016;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Off-Heap Fischer-Heun RMQ: Short project 10
+ * 				Fischer-Heun RMQ structure with Fully-Preprocessed BlockRMQ at the bottom and
+ * 				Block-Minima RMQ at the top, over an OffHeapIntArray with long indices. The block
+ * 				minima, the table offset of every block and the sparse array are OffHeapIntArrays,
+ * 				and only the Fully-Preprocessed tables, at most Catalan(blockSize)+1 of them, stay on
+ * 				the heap. The sparse array holds block offsets as in OffHeapHybridRMQ.
+ * 				The structure is immutable once constructed, as long as the input array is not modified.
+ */
+public class OffHeapFischerHeunRMQ implements LongRangeMinQuery {
+	/**
+	 * Store the size of the input array.
+	 */
+	private final long n;
+
+	/**
+	 * The input array
+	 */
+	private final OffHeapIntArray arr;
+
+	/**
+	 * The minimum array populated with the minimum of each block level RMQ
+	 */
+	private final OffHeapIntArray minArr;
+
+	/**
+	 * Sparse array holding the offset of the block with the leftmost minimum of every range of 2^k blocks, null at level 0
+	 */
+	private final OffHeapIntArray [] sparseArr;
+
+	/**
+	 * Fully-Preprocessed tables of the Cartesian Encodings found in the input array
+	 */
+	private final CartesianTypeTable typeTable;
+
+	/**
+	 * Packed Fully-Preprocessed tables, see CartesianTypeTable
+	 */
+	private final byte [] fullPreProcessArr;
+
+	/**
+	 * Offset of the table of each block in fullPreProcessArr
+	 */
+	private final OffHeapIntArray blockToPreprocessMap;
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	private final int blockShift;
+
+	/**
+	 * Constructor to initialize the OffHeapFischerHeunRMQ class
+	 *
+	 * @param arr	The input array to be queried
+	 */
+	public OffHeapFischerHeunRMQ(OffHeapIntArray arr)
+	{
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the OffHeapFischerHeunRMQ class with build options
+	 *
+	 * @param arr		The input array to be queried
+	 * @param options	The build options, e.g. a pool to build in parallel
+	 */
+	public OffHeapFischerHeunRMQ(OffHeapIntArray arr, BuildOptions options)
+	{
+		this.n = arr.length();
+		this.arr = arr;
+
+		//Set optimal block size to log4(n)/2, rounded to a power of two if requested
+		int blockSize = BlockLayout.fischerHeunBlockSize(Math.max(this.n, 1L));
+		this.blockSize = options.powerOfTwoBlocks()?BlockLayout.powerOfTwo(blockSize):blockSize;
+		this.blockShift = BlockLayout.shift(this.blockSize);
+		long m = this.n>0?BlockLayout.blocks(this.n, this.blockSize):0;
+		if(m>Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Too many blocks for the sparse array: "+m);
+		}
+		this.minArr = OffHeapIntArray.allocate(m);
+		this.sparseArr = new OffHeapIntArray [m>0?BlockLayout.levels((int) m):0];
+		this.typeTable = new CartesianTypeTable(this.blockSize, (int) m);
+		this.blockToPreprocessMap = OffHeapIntArray.allocate(m);
+		if(m>0)
+		{
+			//Fill the minArray containing the minimum elements of each block
+			this.fillMinArr(options.pool());
+
+			//Fill the Sparse Table in a DP fashion
+			this.fillSparseArr(options.pool());
+		}
+		this.fullPreProcessArr = this.typeTable.tables();
+	}
+
+	/**
+	 * Helper method to find the minimum element and the table of each block
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillMinArr(ForkJoinPool pool)
+	{
+		//Find the minimum and the Cartesian Encoding of the blocks in parallel, copying each block to an on-heap scratch array
+		ParallelBuild.forRange(pool, 0, (int) this.minArr.length(), (from, to) -> {
+			int [] block = new int [this.blockSize];
+			int [] stack = new int [this.blockSize];
+			for(int i=from; i<to; i++)
+			{
+				int size = this.copyBlock(i, block);
+				int min = block[0];
+				for(int x=1; x<size; x++)
+				{
+					min = Math.min(min, block[x]);
+				}
+				this.minArr.set(i, min);
+				this.blockToPreprocessMap.set(i, CartesianTypeTable.encode(block, 0, size-1, stack));
+			}
+		});
+
+		//Replace the encodings by table offsets in block order, so that the tables are laid out as in a sequential build
+		int [] block = new int [this.blockSize];
+		for(long i=0; i<this.minArr.length(); i++)
+		{
+			int size = this.copyBlock(i, block);
+			this.blockToPreprocessMap.set(i, this.typeTable.offsetOf(this.blockToPreprocessMap.get(i), block, 0, size-1));
+		}
+	}
+
+	/**
+	 * Helper method to copy a block of the input array
+	 *
+	 * @param b		The index of the block
+	 * @param block	The array receiving the elements of the block
+	 * @return		The number of elements in the block
+	 */
+	private int copyBlock(long b, int [] block)
+	{
+		long start = b*this.blockSize;
+		int size = (int) Math.min(this.blockSize, this.n-start);
+		for(int x=0; x<size; x++)
+		{
+			block[x] = this.arr.get(start+x);
+		}
+		return size;
+	}
+
+	/**
+	 * Helper method to fill the sparseArray in a DP fashion
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillSparseArr(ForkJoinPool pool)
+	{
+		long m = this.minArr.length();
+		for(int i=1; i<this.sparseArr.length; i++)
+		{
+			int k = i;
+			long half = 1L<<(k-1);
+			long last = BlockLayout.levelSize(m, k-1)-1;
+			OffHeapIntArray level = OffHeapIntArray.allocate(BlockLayout.levelSize(m, k));
+			ParallelBuild.forRange(pool, 0, (int) level.length(), (from, to) -> {
+				for(long j=from; j<to; j++)
+				{
+					long left = this.argmin(k-1, j);
+					long right = this.argmin(k-1, Math.min(j+half, last));
+					level.set(j, (int) ((this.minArr.get(left)<=this.minArr.get(right)?left:right)-j));
+				}
+			});
+			this.sparseArr[k] = level;
+		}
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum of a range of 2^k blocks
+	 *
+	 * @param k		The level of the sparse array
+	 * @param j		The first block of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	private long argmin(int k, long j)
+	{
+		return k==0?j:j+this.sparseArr[k].get(j);
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time
+	 *
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public long queryMinRMQIndex(long i, long j)
+	{
+		int k = BlockLayout.log2(j-i+1);
+		long left = this.argmin(k, i);
+		long right = this.argmin(k, j-(1L<<k)+1);
+		return this.minArr.get(left)<=this.minArr.get(right)?left:right;
+	}
+
+	/**
+	 * The main method to query the Off-Heap Fischer-Heun RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	public int query(long i, long j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			long bi = this.blockOf(i);
+			long bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.arr.get(this.queryFullPreprocTblIndex(bi, i, j));
+			}
+			int result = Math.min(this.arr.get(this.queryFullPreprocTblIndex(bi, i, (bi+1)*this.blockSize-1)), this.arr.get(this.queryFullPreprocTblIndex(bj, bj*this.blockSize, j)));
+			if(bi+1<bj)
+			{
+				result = Math.min(result, this.minArr.get(this.queryMinRMQIndex(bi+1, bj-1)));
+			}
+			return result;
+		}
+		else
+		{
+			//Return max value if input is not in the correct format
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Off-Heap Fischer-Heun RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public long queryIndex(long i, long j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			long bi = this.blockOf(i);
+			long bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.queryFullPreprocTblIndex(bi, i, j);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			long result = this.queryFullPreprocTblIndex(bi, i, (bi+1)*this.blockSize-1);
+			if(bi+1<bj)
+			{
+				//The blocks in between are full, so the position of their minimum is the last entry of the first row of their table
+				long block = this.queryMinRMQIndex(bi+1, bj-1);
+				long top = this.queryFullPreprocTblIndex(block, block*this.blockSize, (block+1)*this.blockSize-1);
+				result = this.arr.get(top)<this.arr.get(result)?top:result;
+			}
+			long right = this.queryFullPreprocTblIndex(bj, bj*this.blockSize, j);
+			return this.arr.get(right)<this.arr.get(result)?right:result;
+		}
+		else
+		{
+			//Return -1 if input is not in the correct format
+			return -1;
+		}
+	}
+
+	/**
+	 * Method to find the position of the leftmost minimum element in a given range in Block RMQ
+	 *
+	 * @param block	The index of the block
+	 * @param start	The start index of the range, in the block
+	 * @param end	The end index of the range, in the block
+	 * @return		The index of the leftmost minimum element in the range
+	 */
+	private long queryFullPreprocTblIndex(long block, long start, long end)
+	{
+		long first = block*this.blockSize;
+		int i = (int) (start-first);
+		int j = (int) (end-start);
+		return first+this.fullPreProcessArr[this.blockToPreprocessMap.get(block)+i*this.blockSize-i*(i-1)/2+j];
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 *
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private long blockOf(long i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
+
+	/**
+	 * Main method to test the program on a memory-mapped binary input file
+	 *
+	 * @param args		The binary input file
+	 * @throws IOException	If the input file cannot be mapped
+	 */
+	public static void main(String args []) throws IOException
+	{
+		OffHeapIntArray arr = OffHeapIntArray.map(args.length>0?args[0]:"C:\\Users\\shari\\Downloads\\128M.bin");
+
+		//Set the timer
+		Timer t = new Timer();
+		OffHeapFischerHeunRMQ fh = new OffHeapFischerHeunRMQ(arr);
+		t.end();
+		System.out.println("Preprocessing Time:"+t.elapsedTime);
+		System.out.println(t);
+
+		//Calculating query time on 10000 random ranges, one sample per query after a warm-up pass
+		Random rand = new Random();
+		long [][] testCases = new long[10000][2];
+		for(int x=0; x<10000; x++)
+		{
+			long i = Math.floorMod(rand.nextLong(), arr.length());
+			long j = Math.floorMod(rand.nextLong(), arr.length());
+			testCases[x][0] = Math.min(i, j);
+			testCases[x][1] = Math.max(i, j);
+		}
+		IntUnaryOperator random = x -> fh.query(testCases[x][0], testCases[x][1]);
+		t.warmUp(10000, random);
+		t.sample(10000, random);
+		System.out.println("Query Time: "+t.summary());
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, its arrays outside the heap with their
+	 * chunk tables on the heap, the Fully-Preprocessed tables on the heap and the number of
+	 * materialised Cartesian types
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint footprint = new MemoryFootprint("OffHeapFischerHeunRMQ")
+				.input(this.arr.length()*Integer.BYTES)
+				.object("object", Long.BYTES+2*Integer.BYTES, 6)
+				.array("sparseArr levels", this.sparseArr.length, MemoryFootprint.REFERENCE);
+		this.minArr.footprint(footprint, "minArr");
+		for(OffHeapIntArray level : this.sparseArr)
+		{
+			//Level 0 is the identity and is not stored
+			if(level!=null)
+			{
+				level.footprint(footprint, "sparseArr");
+			}
+		}
+		this.blockToPreprocessMap.footprint(footprint, "blockToPreprocessMap");
+		this.typeTable.footprint(footprint);
+		return footprint;
+	}
+}
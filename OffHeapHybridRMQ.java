@@ -0,0 +1,336 @@
+package sxa190016;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Off-Heap Hybrid 1 RMQ: Short project 10
+ * 				Hybrid 1 RMQ structure with BlockRMQ at the bottom and Block-Minima RMQ at the top,
+ * 				over an OffHeapIntArray with long indices. The block minima and the sparse array are
+ * 				OffHeapIntArrays too, so the heap only holds a few objects whatever the input size.
+ *
+ * 				Level k of the sparse array holds, for every range of 2^k blocks, the offset of the
+ * 				block with the leftmost minimum from the first block of the range. The offsets are
+ * 				below 2^k, so they fit an int for every level of up to Integer.MAX_VALUE blocks, and
+ * 				level 0, where every offset is 0, is not stored.
+ * 				The structure is immutable once constructed, as long as the input array is not modified.
+ */
+public class OffHeapHybridRMQ implements LongRangeMinQuery {
+	/**
+	 * Store the size of the input array.
+	 */
+	private final long n;
+
+	/**
+	 * The input array
+	 */
+	private final OffHeapIntArray arr;
+
+	/**
+	 * The minimum array populated with the minimum of each block level RMQ
+	 */
+	private final OffHeapIntArray minArr;
+
+	/**
+	 * Sparse array holding the offset of the block with the leftmost minimum of every range of 2^k blocks, null at level 0
+	 */
+	private final OffHeapIntArray [] sparseArr;
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * log2(blockSize) if the block size is a power of two, -1 otherwise
+	 */
+	private final int blockShift;
+
+	/**
+	 * Constructor to initialize the OffHeapHybridRMQ class
+	 *
+	 * @param arr	The input array to be queried
+	 */
+	public OffHeapHybridRMQ(OffHeapIntArray arr)
+	{
+		this(arr, new BuildOptions());
+	}
+
+	/**
+	 * Constructor to initialize the OffHeapHybridRMQ class with build options
+	 *
+	 * @param arr		The input array to be queried
+	 * @param options	The build options, e.g. a pool to build in parallel
+	 */
+	public OffHeapHybridRMQ(OffHeapIntArray arr, BuildOptions options)
+	{
+		this.n = arr.length();
+		this.arr = arr;
+
+		//Set optimal block size to log2(n), rounded to a power of two if requested
+		int blockSize = BlockLayout.hybridBlockSize(Math.max(this.n, 1L));
+		this.blockSize = options.powerOfTwoBlocks()?BlockLayout.powerOfTwo(blockSize):blockSize;
+		this.blockShift = BlockLayout.shift(this.blockSize);
+		long m = this.n>0?BlockLayout.blocks(this.n, this.blockSize):0;
+		if(m>Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Too many blocks for the sparse array: "+m);
+		}
+		this.minArr = OffHeapIntArray.allocate(m);
+		this.sparseArr = new OffHeapIntArray [m>0?BlockLayout.levels((int) m):0];
+		if(m>0)
+		{
+			//Fill the minArray containing the minimum elements of each block
+			this.fillMinArr(options.pool());
+
+			//Fill the Sparse Table in a DP fashion
+			this.fillSparseArr(options.pool());
+		}
+	}
+
+	/**
+	 * Helper method to find the minimum element of each block and populate the minArray
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillMinArr(ForkJoinPool pool)
+	{
+		ParallelBuild.forRange(pool, 0, (int) this.minArr.length(), (from, to) -> {
+			for(int i=from; i<to; i++)
+			{
+				long start = (long) i*this.blockSize;
+				this.minArr.set(i, this.min(start, Math.min(start+this.blockSize, this.n)));
+			}
+		});
+	}
+
+	/**
+	 * Helper method to fill the sparseArray in a DP fashion
+	 *
+	 * @param pool	The pool running the build, null to build on the calling thread
+	 */
+	private void fillSparseArr(ForkJoinPool pool)
+	{
+		long m = this.minArr.length();
+		for(int i=1; i<this.sparseArr.length; i++)
+		{
+			int k = i;
+			long half = 1L<<(k-1);
+			long last = BlockLayout.levelSize(m, k-1)-1;
+			OffHeapIntArray level = OffHeapIntArray.allocate(BlockLayout.levelSize(m, k));
+			ParallelBuild.forRange(pool, 0, (int) level.length(), (from, to) -> {
+				for(long j=from; j<to; j++)
+				{
+					long left = this.argmin(k-1, j);
+					long right = this.argmin(k-1, Math.min(j+half, last));
+					level.set(j, (int) ((this.minArr.get(left)<=this.minArr.get(right)?left:right)-j));
+				}
+			});
+			this.sparseArr[k] = level;
+		}
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum of a range of 2^k blocks
+	 *
+	 * @param k		The level of the sparse array
+	 * @param j		The first block of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	private long argmin(int k, long j)
+	{
+		return k==0?j:j+this.sparseArr[k].get(j);
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time
+	 *
+	 * @param i		Start index of the range
+	 * @param j		End of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public long queryMinRMQIndex(long i, long j)
+	{
+		int k = BlockLayout.log2(j-i+1);
+		long left = this.argmin(k, i);
+		long right = this.argmin(k, j-(1L<<k)+1);
+		return this.minArr.get(left)<=this.minArr.get(right)?left:right;
+	}
+
+	/**
+	 * The main method to query the Off-Heap Hybrid RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range
+	 */
+	public int query(long i, long j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			long bi = this.blockOf(i);
+			long bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.min(i, j+1);
+			}
+			int result = Math.min(this.min(i, (bi+1)*this.blockSize), this.min(bj*this.blockSize, j+1));
+			if(bi+1<bj)
+			{
+				result = Math.min(result, this.minArr.get(this.queryMinRMQIndex(bi+1, bj-1)));
+			}
+			return result;
+		}
+		else
+		{
+			//Return max value if input is not in the correct format
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Off-Heap Hybrid RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public long queryIndex(long i, long j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			long bi = this.blockOf(i);
+			long bj = this.blockOf(j);
+			if(bi==bj)
+			{
+				return this.minIndex(i, j+1);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			long result = this.minIndex(i, (bi+1)*this.blockSize);
+			if(bi+1<bj)
+			{
+				//The position in the block is not stored, so scan the block like the BlockRMQ does
+				long start = this.queryMinRMQIndex(bi+1, bj-1)*this.blockSize;
+				long top = this.minIndex(start, start+this.blockSize);
+				result = this.arr.get(top)<this.arr.get(result)?top:result;
+			}
+			long right = this.minIndex(bj*this.blockSize, j+1);
+			return this.arr.get(right)<this.arr.get(result)?right:result;
+		}
+		else
+		{
+			//Return -1 if input is not in the correct format
+			return -1;
+		}
+	}
+
+	/**
+	 * Helper method to find the block of an index, with a shift if the block size is a power of two
+	 *
+	 * @param i		The index in the input array
+	 * @return		The index of the block holding i
+	 */
+	private long blockOf(long i)
+	{
+		return this.blockShift>=0?i>>>this.blockShift:i/this.blockSize;
+	}
+
+	/**
+	 * Helper method to find the minimum element of the input array in a given range
+	 *
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range
+	 * @return			The minimum element in the range
+	 */
+	private int min(long start, long end)
+	{
+		int result = this.arr.get(start);
+		for(long i=start+1; i<end; i++)
+		{
+			result = Math.min(result, this.arr.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method to find the position of the leftmost minimum element of the input array in a given range
+	 *
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range
+	 * @return			The index of the leftmost minimum element in the range
+	 */
+	private long minIndex(long start, long end)
+	{
+		long result = start;
+		for(long i=start+1; i<end; i++)
+		{
+			if(this.arr.get(i)<this.arr.get(result))
+			{
+				result = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Main method to test the program on a memory-mapped binary input file
+	 *
+	 * @param args		The binary input file
+	 * @throws IOException	If the input file cannot be mapped
+	 */
+	public static void main(String args []) throws IOException
+	{
+		OffHeapIntArray arr = OffHeapIntArray.map(args.length>0?args[0]:"C:\\Users\\shari\\Downloads\\128M.bin");
+
+		//Set the timer
+		Timer t = new Timer();
+		OffHeapHybridRMQ hr = new OffHeapHybridRMQ(arr);
+		t.end();
+		System.out.println("Preprocessing Time:"+t.elapsedTime);
+		System.out.println(t);
+
+		//Calculating query time on 10000 random ranges, one sample per query after a warm-up pass
+		Random rand = new Random();
+		long [][] testCases = new long[10000][2];
+		for(int x=0; x<10000; x++)
+		{
+			long i = Math.floorMod(rand.nextLong(), arr.length());
+			long j = Math.floorMod(rand.nextLong(), arr.length());
+			testCases[x][0] = Math.min(i, j);
+			testCases[x][1] = Math.max(i, j);
+		}
+		IntUnaryOperator random = x -> hr.query(testCases[x][0], testCases[x][1]);
+		t.warmUp(10000, random);
+		t.sample(10000, random);
+		System.out.println("Query Time: "+t.summary());
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, its arrays outside the heap and their
+	 * chunk tables on the heap
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint footprint = new MemoryFootprint("OffHeapHybridRMQ")
+				.input(this.arr.length()*Integer.BYTES)
+				.object("object", Long.BYTES+2*Integer.BYTES, 3)
+				.array("sparseArr levels", this.sparseArr.length, MemoryFootprint.REFERENCE);
+		this.minArr.footprint(footprint, "minArr");
+		for(OffHeapIntArray level : this.sparseArr)
+		{
+			//Level 0 is the identity and is not stored
+			if(level!=null)
+			{
+				level.footprint(footprint, "sparseArr");
+			}
+		}
+		return footprint;
+	}
+}
@@ -0,0 +1,168 @@
+package sxa190016;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Off-Heap Int Array: Short project 10
+ * 				Array of ints outside the Java heap, indexed by a long so that it can hold more than
+ * 				2^31 elements. The elements are split into chunks of 2^CHUNK_SHIFT ints, each one a direct
+ * 				or memory-mapped buffer, and element i is at position i & CHUNK_MASK of chunk i >>> CHUNK_SHIFT.
+ *
+ * 				The memory is not counted in the heap and never moved by the garbage collector. Direct
+ * 				chunks are limited by -XX:MaxDirectMemorySize and freed once the array is unreachable.
+ */
+public final class OffHeapIntArray {
+	/**
+	 * log2 of the number of ints in a chunk, 1 GiB per chunk
+	 */
+	static final int CHUNK_SHIFT = 28;
+
+	/**
+	 * Mask of the position of an element in its chunk
+	 */
+	private static final long CHUNK_MASK = (1L<<CHUNK_SHIFT)-1;
+
+	/**
+	 * Number of elements
+	 */
+	private final long length;
+
+	/**
+	 * The chunks holding the elements
+	 */
+	private final IntBuffer [] chunks;
+
+	/**
+	 * Constructor to wrap the chunks of an array
+	 *
+	 * @param length	The number of elements
+	 * @param chunks	The chunks, all of 2^CHUNK_SHIFT elements except the last one
+	 */
+	private OffHeapIntArray(long length, IntBuffer [] chunks)
+	{
+		this.length = length;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Allocate an array of zeros in direct memory
+	 *
+	 * @param length	The number of elements
+	 * @return			The new array
+	 */
+	public static OffHeapIntArray allocate(long length)
+	{
+		IntBuffer [] chunks = new IntBuffer [chunks(length)];
+		for(int c=0; c<chunks.length; c++)
+		{
+			long size = Math.min(length-((long) c<<CHUNK_SHIFT), 1L<<CHUNK_SHIFT);
+			chunks[c] = ByteBuffer.allocateDirect((int) size*Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		return new OffHeapIntArray(length, chunks);
+	}
+
+	/**
+	 * Copy an on-heap array to direct memory
+	 *
+	 * @param arr	The array to copy
+	 * @return		The new array
+	 */
+	public static OffHeapIntArray of(int [] arr)
+	{
+		OffHeapIntArray result = allocate(arr.length);
+		for(int c=0; c<result.chunks.length; c++)
+		{
+			result.chunks[c].put(0, arr, c<<CHUNK_SHIFT, result.chunks[c].capacity());
+		}
+		return result;
+	}
+
+	/**
+	 * Memory-map a binary file of little-endian ints written by DatasetLoader.convert() read-only,
+	 * so that the operating system pages the elements in on demand
+	 *
+	 * @param path			The path of the binary file
+	 * @return				The mapped array
+	 * @throws IOException	If the file cannot be mapped
+	 */
+	public static OffHeapIntArray map(String path) throws IOException
+	{
+		try(FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+		{
+			long length = ch.size()/Integer.BYTES;
+			IntBuffer [] chunks = new IntBuffer [chunks(length)];
+			for(int c=0; c<chunks.length; c++)
+			{
+				long start = (long) c<<CHUNK_SHIFT;
+				long size = Math.min(length-start, 1L<<CHUNK_SHIFT);
+				chunks[c] = ch.map(FileChannel.MapMode.READ_ONLY, start*Integer.BYTES, size*Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			}
+			return new OffHeapIntArray(length, chunks);
+		}
+	}
+
+	/**
+	 * Helper method to find the number of chunks of an array
+	 *
+	 * @param length	The number of elements
+	 * @return			ceil(length/2^CHUNK_SHIFT)
+	 */
+	private static int chunks(long length)
+	{
+		return (int) ((length+CHUNK_MASK)>>>CHUNK_SHIFT);
+	}
+
+	/**
+	 * Get the number of elements
+	 *
+	 * @return		The number of elements
+	 */
+	public long length()
+	{
+		return this.length;
+	}
+
+	/**
+	 * Get an element
+	 *
+	 * @param i		The index of the element, in [0, length)
+	 * @return		The element at index i
+	 */
+	public int get(long i)
+	{
+		return this.chunks[(int) (i>>>CHUNK_SHIFT)].get((int) (i&CHUNK_MASK));
+	}
+
+	/**
+	 * Set an element of an array which is not memory-mapped
+	 *
+	 * @param i		The index of the element, in [0, length)
+	 * @param val	The new value of the element
+	 */
+	public void set(long i, int val)
+	{
+		this.chunks[(int) (i>>>CHUNK_SHIFT)].put((int) (i&CHUNK_MASK), val);
+	}
+
+	/**
+	 * Add the array to a footprint report: its object and table of chunks on the heap and its
+	 * elements outside the heap
+	 *
+	 * @param footprint	The report of the structure owning the array
+	 * @param name		The name of the component
+	 */
+	void footprint(MemoryFootprint footprint, String name)
+	{
+		footprint.object(name+" chunks", Long.BYTES, 1)
+				.array(name+" chunks", this.chunks.length, MemoryFootprint.REFERENCE)
+				.offHeap(name, this.length*Integer.BYTES);
+	}
+}
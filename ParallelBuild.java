@@ -0,0 +1,93 @@
+package sxa190016;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Parallel Build: Short project 10
+ * 				Splits the preprocessing loops over independent indices (blocks, entries of a
+ * 				sparse array level) into chunks run by the workers of a ForkJoinPool.
+ */
+final class ParallelBuild {
+	/**
+	 * Smallest number of indices worth handing to a worker
+	 */
+	private static final int MIN_GRAIN = 1 << 12;
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Parallel Build: Short project 10
+	 * 				Body of a loop over the indices [from, to)
+	 */
+	@FunctionalInterface
+	interface RangeTask {
+		/**
+		 * Run the loop over a chunk of indices
+		 *
+		 * @param from	The first index of the chunk
+		 * @param to	The last+1 index of the chunk
+		 */
+		void run(int from, int to);
+	}
+
+	/**
+	 * Run a loop over the indices [from, to) on a pool, or on the calling thread if there is no pool
+	 *
+	 * @param pool	The pool running the loop, null to run it on the calling thread
+	 * @param from	The first index
+	 * @param to	The last+1 index
+	 * @param task	The body of the loop, which must be safe to run concurrently on disjoint chunks
+	 */
+	static void forRange(ForkJoinPool pool, int from, int to, RangeTask task)
+	{
+		if(pool==null || to-from<=MIN_GRAIN)
+		{
+			task.run(from, to);
+		}
+		else
+		{
+			int grain = Math.max(MIN_GRAIN, (to-from)/(8*pool.getParallelism()));
+			pool.invoke(new Chunk(from, to, grain, task));
+		}
+	}
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Parallel Build: Short project 10
+	 * 				Fork-join task halving its chunk until it is at most grain indices long
+	 */
+	private static final class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int grain;
+		private final transient RangeTask task;
+
+		Chunk(int from, int to, int grain, RangeTask task)
+		{
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(this.to-this.from<=this.grain)
+			{
+				this.task.run(this.from, this.to);
+			}
+			else
+			{
+				int mid = (this.from+this.to)>>>1;
+				invokeAll(new Chunk(this.from, mid, this.grain, this.task), new Chunk(mid, this.to, this.grain, this.task));
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package sxa190016;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Query Batch: Short project 10
+ * 				Scratch buffers of a batch of range queries answered in groups of GROUP queries,
+ * 				one stage at a time.
+ *
+ * 				A single query is a chain of dependent loads: the sparse array entry gives the block
+ * 				whose minimum is read next, and in FischerHeunRMQ the table offset of a block gives the
+ * 				table entry which gives the element. In a loop of queries the processor can only
+ * 				overlap the chains of the few queries that fit in its reorder window, so on a large input
+ * 				most of the time is spent waiting for one cache miss after the other. A batch instead
+ * 				runs the first load of every query of the group, then the second one, and so on: the
+ * 				loads of a stage are independent of each other, so up to GROUP cache misses are in
+ * 				flight at once. The queries are answered in the order given, and the buffers hold the
+ * 				values passed from one stage to the next, so nothing is allocated per query.
+ */
+final class QueryBatch {
+	/**
+	 * Number of queries whose loads of a stage are issued together, enough misses to fill the
+	 * line fill buffers of the core while the buffers stay in the L1 cache
+	 */
+	static final int GROUP = 32;
+
+	/**
+	 * Block of the start index of each query of the group
+	 */
+	final int [] firstBlock = new int [GROUP];
+
+	/**
+	 * Block of the end index of each query of the group
+	 */
+	final int [] lastBlock = new int [GROUP];
+
+	/**
+	 * Value carried by each query of the group from one stage to the next, e.g. the position of the
+	 * minimum of the block of the start index
+	 */
+	final int [] left = new int [GROUP];
+
+	/**
+	 * Value carried by each query of the group from one stage to the next, e.g. the position of the
+	 * minimum of the block of the end index
+	 */
+	final int [] right = new int [GROUP];
+
+	/**
+	 * Value carried by each query of the group from one stage to the next for the blocks strictly
+	 * between the blocks of its ends, e.g. the minimum of the left sparse array entry
+	 */
+	final int [] topLeft = new int [GROUP];
+
+	/**
+	 * Value carried by each query of the group from one stage to the next for the blocks strictly
+	 * between the blocks of its ends, e.g. the minimum of the right sparse array entry
+	 */
+	final int [] topRight = new int [GROUP];
+}
@@ -0,0 +1,264 @@
+package sxa190016;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Query Metrics: Short project 10
+ * 				Counters of the decomposition branch taken by each query, a latency histogram and the
+ * 				timings of the preprocessing phases of a HybridRMQ or FischerHeunRMQ, given to the
+ * 				structure with BuildOptions.metrics().
+ *
+ * 				The query path only records when ENABLED is true, which is read once from the system
+ * 				property sxa190016.metrics (-Dsxa190016.metrics=true). As a static final constant it is
+ * 				folded by the JIT, so with the property unset the recording code is removed from the
+ * 				compiled query. Every query is counted in its branch, and one in 64, drawn at random from
+ * 				ThreadLocalRandom, is timed for the latency histogram, so a range asked over and over is
+ * 				timed as often as any other. The counters are LongAdders, so threads sharing a structure record
+ * 				without contending on one cache line. The phase timings are always recorded, since
+ * 				they cost nothing per query.
+ */
+public class QueryMetrics {
+	/**
+	 * True if the query path records metrics, from the system property sxa190016.metrics
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("sxa190016.metrics");
+
+	/**
+	 * Number of buckets of the latency histogram, bucket b holding the latencies in [2^(b-1), 2^b) nanoseconds
+	 */
+	private static final int BUCKETS = 40;
+
+	/**
+	 * One query in LATENCY_SAMPLE is timed, a power of two, as a pair of System.nanoTime() calls costs
+	 * about as much as a query
+	 */
+	private static final int LATENCY_SAMPLE = 64;
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Query Metrics: Short project 10
+	 * 				Decomposition of a valid range [i, j] into the BlockRMQ of the blocks of i and j and
+	 * 				the Block-Minima RMQ of the blocks strictly between them
+	 */
+	public enum Branch {
+		/**
+		 * i and j are in the same block
+		 */
+		IN_BLOCK,
+		/**
+		 * i and j are in neighbouring blocks, no Block-Minima RMQ
+		 */
+		TWO_BLOCK,
+		/**
+		 * A partial block of i, the Block-Minima RMQ and a full block of j
+		 */
+		LEFT_TOP,
+		/**
+		 * A full block of i, the Block-Minima RMQ and a partial block of j
+		 */
+		TOP_RIGHT,
+		/**
+		 * Full blocks of i and j around the Block-Minima RMQ
+		 */
+		TOP,
+		/**
+		 * Partial blocks of i and j around the Block-Minima RMQ
+		 */
+		THREE_PART;
+
+		/**
+		 * Classify a valid range
+		 *
+		 * @param i			The start index of the range
+		 * @param j			The end index of the range
+		 * @param bi		The block of i
+		 * @param bj		The block of j
+		 * @param blockSize	The block size of the BlockRMQ
+		 * @return			The decomposition of the range
+		 */
+		static Branch of(int i, int j, int bi, int bj, int blockSize)
+		{
+			if(bi==bj)
+			{
+				return IN_BLOCK;
+			}
+			if(bi+1==bj)
+			{
+				return TWO_BLOCK;
+			}
+			boolean fullLeft = i==bi*blockSize;
+			boolean fullRight = j==(bj+1)*blockSize-1;
+			return fullLeft?(fullRight?TOP:TOP_RIGHT):(fullRight?LEFT_TOP:THREE_PART);
+		}
+	}
+
+	/**
+	 * Number of queries of each branch
+	 */
+	private final LongAdder [] branches = new LongAdder [Branch.values().length];
+
+	/**
+	 * Number of queries of each latency bucket
+	 */
+	private final LongAdder [] latencies = new LongAdder [BUCKETS];
+
+	/**
+	 * Nanoseconds spent in each preprocessing phase, in the order the phases ran
+	 */
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+
+	/**
+	 * Constructor to initialize empty metrics
+	 */
+	public QueryMetrics()
+	{
+		for(int b=0; b<this.branches.length; b++)
+		{
+			this.branches[b] = new LongAdder();
+		}
+		for(int b=0; b<BUCKETS; b++)
+		{
+			this.latencies[b] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Record the decomposition branch of a query
+	 *
+	 * @param branch	The decomposition of the range
+	 */
+	void record(Branch branch)
+	{
+		this.branches[branch.ordinal()].increment();
+	}
+
+	/**
+	 * Check if the latency of the next query is sampled, independently of its range, with the
+	 * random generator of the calling thread so that threads do not share its state
+	 *
+	 * @return		True for one query in LATENCY_SAMPLE on average
+	 */
+	static boolean sampled()
+	{
+		return ThreadLocalRandom.current().nextInt(LATENCY_SAMPLE)==0;
+	}
+
+	/**
+	 * Record the latency of a sampled query
+	 *
+	 * @param nanos		The latency of the query in nanoseconds
+	 */
+	void recordLatency(long nanos)
+	{
+		this.latencies[Math.min(BUCKETS-1, 64-Long.numberOfLeadingZeros(Math.max(nanos, 0)))].increment();
+	}
+
+	/**
+	 * Record the time of a preprocessing phase, adding to the time of the phase if it ran before
+	 *
+	 * @param name			The name of the phase
+	 * @param startNanos	The System.nanoTime() at the start of the phase
+	 */
+	synchronized void phase(String name, long startNanos)
+	{
+		this.phases.merge(name, System.nanoTime()-startNanos, Long::sum);
+	}
+
+	/**
+	 * Get the number of queries of a branch
+	 *
+	 * @param branch	The decomposition of the range
+	 * @return			The number of queries recorded with this decomposition
+	 */
+	public long count(Branch branch)
+	{
+		return this.branches[branch.ordinal()].sum();
+	}
+
+	/**
+	 * Get an upper bound of a percentile of the query latency from the histogram of the sampled queries
+	 *
+	 * @param percentile	The percentile, in (0, 100]
+	 * @return				The upper end of the bucket holding the percentile in nanoseconds, 0 if nothing was recorded
+	 */
+	public long latencyPercentile(double percentile)
+	{
+		long [] counts = new long [BUCKETS];
+		long total = 0;
+		for(int b=0; b<BUCKETS; b++)
+		{
+			counts[b] = this.latencies[b].sum();
+			total += counts[b];
+		}
+		long rank = (long) Math.ceil(total*percentile/100);
+		long seen = 0;
+		for(int b=0; b<BUCKETS; b++)
+		{
+			seen += counts[b];
+			if(seen>=rank && counts[b]>0)
+			{
+				return 1L<<b;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the timings of the preprocessing phases
+	 *
+	 * @return		The nanoseconds spent in each phase, in the order the phases ran
+	 */
+	public synchronized Map<String, Long> phases()
+	{
+		return new LinkedHashMap<>(this.phases);
+	}
+
+	/**
+	 * Reset the query counters and the latency histogram, keeping the phase timings
+	 */
+	public void reset()
+	{
+		for(LongAdder a : this.branches)
+		{
+			a.reset();
+		}
+		for(LongAdder a : this.latencies)
+		{
+			a.reset();
+		}
+	}
+
+	/**
+	 * Report the phase timings, the share of each branch and the latency percentiles
+	 *
+	 * @return		The report, one line per phase and per branch
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, Long> e : this.phases().entrySet())
+		{
+			sb.append(String.format("phase %-14s %10.1f ms%n", e.getKey(), e.getValue()/1e6));
+		}
+		long total = 0;
+		for(Branch b : Branch.values())
+		{
+			total += this.count(b);
+		}
+		for(Branch b : Branch.values())
+		{
+			long count = this.count(b);
+			sb.append(String.format("branch %-13s %,14d  %5.1f%%%n", b, count, total==0?0:100.0*count/total));
+		}
+		sb.append(String.format("latency p50 <= %d ns  p99 <= %d ns  p99.9 <= %d ns%s%n", this.latencyPercentile(50), this.latencyPercentile(99), this.latencyPercentile(99.9),
+				ENABLED?"":"  (query metrics disabled, run with -Dsxa190016.metrics=true)"));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,69 @@
+package sxa190016;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Range Minimum Query: Short project 10
+ * 				Common type of all the RMQ structures so that they can be built from an
+ * 				input array, queried and benchmarked interchangeably.
+ */
+public interface RangeMinQuery {
+	/**
+	 * Query the minimum element in the range [i, j] of the input array
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range, Integer.MAX_VALUE if the range is invalid
+	 */
+	int query(int i, int j);
+
+	/**
+	 * Query the position of the leftmost minimum element in the range [i, j] of the input array
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	int queryIndex(int i, int j);
+
+	/**
+	 * Query the minimum element of a batch of ranges [lo[x], hi[x]]. The ranges are not validated,
+	 * so every range must satisfy 0 <= lo[x] <= hi[x] < n. Implementations may interleave the loads
+	 * of several queries so that their cache misses overlap.
+	 *
+	 * @param lo	The start indices of the ranges
+	 * @param hi	The end indices of the ranges
+	 * @param out	The array receiving the minimum element of each range
+	 */
+	default void query(int [] lo, int [] hi, int [] out)
+	{
+		for(int x=0; x<lo.length; x++)
+		{
+			out[x] = this.query(lo[x], hi[x]);
+		}
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays
+	 *
+	 * @return		The footprint report, the input array reported apart from the total
+	 */
+	MemoryFootprint memoryFootprint();
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Range Minimum Query: Short project 10
+	 * 				Builds an RMQ structure from an input array, e.g. HybridRMQ::new
+	 */
+	@FunctionalInterface
+	interface Builder {
+		/**
+		 * Build the RMQ structure for the given input array
+		 *
+		 * @param arr	The input array to be queried
+		 * @return		The preprocessed RMQ structure
+		 */
+		RangeMinQuery build(int [] arr);
+	}
+}
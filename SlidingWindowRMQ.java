@@ -0,0 +1,165 @@
+package sxa190016;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Sliding Window RMQ: Short project 10
+ * 				Minimum of the last W elements of a stream, as the window advances one element at a time,
+ * 				in O(W) memory and O(1) amortised time per operation.
+ *
+ * 				The window is split into two blocks, as in the van Herk/Gil-Werman algorithm. The front
+ * 				block holds the oldest elements with the minimum of each suffix, so evicting an element
+ * 				moves to the next suffix. The back block holds the newest elements with only the running
+ * 				minimum of the block. The minimum of the window is the minimum of the suffix of the front
+ * 				block and of the back block. When the front block is empty, the back block becomes the
+ * 				front block and its suffix minima are computed once, so every element is scanned at most
+ * 				twice. Both blocks live in one ring buffer of W elements.
+ */
+public class SlidingWindowRMQ {
+	/**
+	 * Capacity of the window
+	 */
+	private final int window;
+
+	/**
+	 * Ring buffer of the elements of the window
+	 */
+	private final int [] arr;
+
+	/**
+	 * Minimum of the suffix of the front block starting at each position of the ring buffer
+	 */
+	private final int [] suffixMin;
+
+	/**
+	 * Position of the oldest element of the window in the ring buffer
+	 */
+	private int head;
+
+	/**
+	 * Position of the next element in the ring buffer
+	 */
+	private int tail;
+
+	/**
+	 * Number of elements in the window
+	 */
+	private int size;
+
+	/**
+	 * Number of elements in the front block, the oldest ones
+	 */
+	private int front;
+
+	/**
+	 * Minimum of the back block, Integer.MAX_VALUE if it is empty
+	 */
+	private int backMin;
+
+	/**
+	 * Constructor to initialize an empty window
+	 *
+	 * @param window	The number of elements of the window, at least 1
+	 */
+	public SlidingWindowRMQ(int window)
+	{
+		if(window<1)
+		{
+			throw new IllegalArgumentException("Window must hold at least one element: "+window);
+		}
+		this.window = window;
+		this.arr = new int [window];
+		this.suffixMin = new int [window];
+		this.backMin = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Push an element into the window, evicting the oldest one if the window is full
+	 *
+	 * @param value		The new element
+	 */
+	public void push(int value)
+	{
+		if(this.size==this.window)
+		{
+			this.pop();
+		}
+		this.arr[this.tail] = value;
+		this.tail = this.next(this.tail);
+		this.backMin = Math.min(this.backMin, value);
+		this.size++;
+	}
+
+	/**
+	 * Evict the oldest element of the window
+	 *
+	 * @return		The evicted element
+	 */
+	public int pop()
+	{
+		if(this.size==0)
+		{
+			throw new IllegalStateException("The window is empty");
+		}
+		if(this.front==0)
+		{
+			this.flip();
+		}
+		int value = this.arr[this.head];
+		this.head = this.next(this.head);
+		this.front--;
+		this.size--;
+		return value;
+	}
+
+	/**
+	 * Helper method to turn the back block into the front block, computing its suffix minima from the right
+	 */
+	private void flip()
+	{
+		int min = Integer.MAX_VALUE;
+		for(int x=0, pos=this.tail; x<this.size; x++)
+		{
+			pos = (pos==0?this.window:pos)-1;
+			min = Math.min(min, this.arr[pos]);
+			this.suffixMin[pos] = min;
+		}
+		this.front = this.size;
+		this.backMin = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Helper method to find the next position in the ring buffer
+	 *
+	 * @param pos	A position in the ring buffer
+	 * @return		The position after it
+	 */
+	private int next(int pos)
+	{
+		return pos+1==this.window?0:pos+1;
+	}
+
+	/**
+	 * Get the minimum element of the window
+	 *
+	 * @return		The minimum element of the window, Integer.MAX_VALUE if it is empty
+	 */
+	public int min()
+	{
+		if(this.front==0)
+		{
+			return this.backMin;
+		}
+		return Math.min(this.suffixMin[this.head], this.backMin);
+	}
+
+	/**
+	 * Get the number of elements in the window
+	 *
+	 * @return		The number of elements in the window, at most the capacity of the window
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+}
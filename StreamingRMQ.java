@@ -0,0 +1,325 @@
+package sxa190016;
+
+import java.util.Arrays;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Streaming RMQ: Short project 10
+ * 				Fischer-Heun RMQ structure for Minimum Range Query over an append-only stream,
+ * 				with Fully-Preprocessed BlockRMQ at the bottom and Block-Minima RMQ at the top.
+ *
+ * 				append() pushes the value on the right spine of the Cartesian tree of the open block,
+ * 				so the Cartesian Encoding of the block is complete when it fills up and the block is
+ * 				closed. Closing block c adds, to every level k of the sparse array, the entry of the
+ * 				2^k blocks ending at c, and starts a new level when c+1 reaches a power of two, so the
+ * 				structure is never rebuilt and append() takes O(1) amortised time. Any range of the
+ * 				elements appended so far can be queried; the open block is scanned.
+ *
+ * 				The structure is not safe for appends running concurrently with queries or other
+ * 				appends without external locking.
+ */
+public class StreamingRMQ implements RangeMinQuery {
+	/**
+	 * Initial capacity of the growable arrays
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Number of elements appended so far
+	 */
+	private int n;
+
+	/**
+	 * The elements appended so far, with spare capacity
+	 */
+	private int [] arr;
+
+	/**
+	 * Number of closed blocks
+	 */
+	private int blocks;
+
+	/**
+	 * The minimum array populated with the minimum of each closed block
+	 */
+	private int [] minArr;
+
+	/**
+	 * Position of the leftmost minimum of each closed block relative to the start of the block
+	 */
+	private byte [] minPosArr;
+
+	/**
+	 * Sparse array holding the index of the block with the leftmost minimum of every range of 2^k
+	 * closed blocks, null at level 0 where it is the first block of the range
+	 */
+	private int [][] sparseArr;
+
+	/**
+	 * Fully-Preprocessed tables of all the Cartesian Encodings present in the closed blocks
+	 */
+	private final CartesianTypeTable typeTable;
+
+	/**
+	 * Block RMQ to Full-Preprocess array offset mapping of the closed blocks
+	 */
+	private int [] blockToPreprocessMap;
+
+	/**
+	 * Right spine of the Cartesian tree of the open block
+	 */
+	private final int [] stack;
+
+	/**
+	 * Number of nodes on the right spine of the open block
+	 */
+	private int top;
+
+	/**
+	 * Cartesian Encoding of the open block so far
+	 */
+	private int code;
+
+	/**
+	 * Block size of the BlockRMQ
+	 */
+	private final int blockSize;
+
+	/**
+	 * Constructor to initialize an empty StreamingRMQ for streams of up to 2^31-1 elements
+	 */
+	public StreamingRMQ()
+	{
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor to initialize an empty StreamingRMQ with the block size of a FischerHeunRMQ of the expected size
+	 *
+	 * @param expectedSize	The expected number of elements of the stream
+	 */
+	public StreamingRMQ(int expectedSize)
+	{
+		this.blockSize = BlockLayout.fischerHeunBlockSize(Math.max(expectedSize, 1));
+		this.arr = new int [INITIAL_CAPACITY];
+		this.minArr = new int [INITIAL_CAPACITY];
+		this.minPosArr = new byte [INITIAL_CAPACITY];
+		this.blockToPreprocessMap = new int [INITIAL_CAPACITY];
+		this.sparseArr = new int [1][];
+		this.typeTable = new CartesianTypeTable(this.blockSize, Integer.MAX_VALUE);
+		this.stack = new int [this.blockSize];
+	}
+
+	/**
+	 * Append an element to the stream
+	 *
+	 * @param value		The new element, at index size()
+	 */
+	public void append(int value)
+	{
+		if(this.n==this.arr.length)
+		{
+			this.arr = Arrays.copyOf(this.arr, 2*this.arr.length);
+		}
+		this.arr[this.n++] = value;
+
+		//Push the value on the right spine of the open block, as CartesianTypeTable.encode() does
+		while(this.top>0 && this.stack[this.top-1]>value)
+		{
+			this.top--;
+			this.code <<= 1;
+		}
+		this.stack[this.top++] = value;
+		this.code = (this.code<<1)|1;
+
+		if(this.n-this.blocks*this.blockSize==this.blockSize)
+		{
+			this.closeBlock();
+		}
+	}
+
+	/**
+	 * Helper method to close the open block once it is full, and extend every level of the sparse array
+	 */
+	private void closeBlock()
+	{
+		int c = this.blocks;
+		int start = c*this.blockSize;
+		if(c==this.minArr.length)
+		{
+			this.minArr = Arrays.copyOf(this.minArr, 2*c);
+			this.minPosArr = Arrays.copyOf(this.minPosArr, 2*c);
+			this.blockToPreprocessMap = Arrays.copyOf(this.blockToPreprocessMap, 2*c);
+		}
+		int minIndex = start;
+		for(int i=start+1; i<start+this.blockSize; i++)
+		{
+			if(this.arr[i]<this.arr[minIndex])
+			{
+				minIndex = i;
+			}
+		}
+		this.minArr[c] = this.arr[minIndex];
+		this.minPosArr[c] = (byte) (minIndex-start);
+
+		//Pop the remaining nodes of the right spine to complete the encoding
+		this.blockToPreprocessMap[c] = this.typeTable.offsetOf(this.code<<this.top, this.arr, start, start+this.blockSize-1);
+		this.code = 0;
+		this.top = 0;
+		this.blocks++;
+
+		//Add the range of 2^k blocks ending at c to every level k it fits in
+		for(int k=1; (1<<k)<=this.blocks; k++)
+		{
+			if(k==this.sparseArr.length)
+			{
+				this.sparseArr = Arrays.copyOf(this.sparseArr, k+1);
+				this.sparseArr[k] = new int [INITIAL_CAPACITY];
+			}
+			int j = c-(1<<k)+1;
+			if(j==this.sparseArr[k].length)
+			{
+				this.sparseArr[k] = Arrays.copyOf(this.sparseArr[k], 2*j);
+			}
+			int left = this.argmin(k-1, j);
+			int right = this.argmin(k-1, j+(1<<(k-1)));
+			this.sparseArr[k][j] = this.minArr[left]<=this.minArr[right]?left:right;
+		}
+	}
+
+	/**
+	 * Get the number of elements appended so far
+	 *
+	 * @return		The size of the stream
+	 */
+	public int size()
+	{
+		return this.n;
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum of a range of 2^k closed blocks
+	 *
+	 * @param k		The level of the sparse array
+	 * @param j		The first block of the range
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	private int argmin(int k, int j)
+	{
+		return k==0?j:this.sparseArr[k][j];
+	}
+
+	/**
+	 * Helper method to find the block with the leftmost minimum in the Block-Minima RMQ (Sparse Array) structure in constant time
+	 *
+	 * @param i		Start index of the range, a closed block
+	 * @param j		End of the range, a closed block
+	 * @return		The index of the block with the leftmost minimum element in the range
+	 */
+	public int queryMinRMQIndex(int i, int j)
+	{
+		int k = BlockLayout.log2(j-i+1);
+		int left = this.argmin(k, i);
+		int right = this.argmin(k, j-(1<<k)+1);
+		return this.minArr[left]<=this.minArr[right]?left:right;
+	}
+
+	/**
+	 * The main method to query the Streaming RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The minimum element in the given range of the elements appended so far
+	 */
+	public int query(int i, int j)
+	{
+		int index = this.queryIndex(i, j);
+		return index<0?Integer.MAX_VALUE:this.arr[index];
+	}
+
+	/**
+	 * Query the position of the leftmost minimum element in the Streaming RMQ structure
+	 *
+	 * @param i		The start index of the range
+	 * @param j		The end index of the range
+	 * @return		The index of the leftmost minimum element in the given range, -1 if the range is invalid
+	 */
+	public int queryIndex(int i, int j)
+	{
+		if(this.n>0 && i>=0 && i<=j && j<this.n)
+		{
+			int bi = i/this.blockSize;
+			int bj = j/this.blockSize;
+			if(bi==bj)
+			{
+				return this.blockQueryIndex(bi, i, j);
+			}
+
+			//Candidates from left to right, a later one is taken only if it is strictly smaller
+			int result = this.blockQueryIndex(bi, i, (bi+1)*this.blockSize-1);
+			if(bi+1<bj)
+			{
+				int block = this.queryMinRMQIndex(bi+1, bj-1);
+				int top = block*this.blockSize+this.minPosArr[block];
+				result = this.arr[top]<this.arr[result]?top:result;
+			}
+			int right = this.blockQueryIndex(bj, bj*this.blockSize, j);
+			return this.arr[right]<this.arr[result]?right:result;
+		}
+		else
+		{
+			//Return -1 if input is not in the correct format
+			return -1;
+		}
+	}
+
+	/**
+	 * Helper method to find the position of the leftmost minimum element in a given range of a block,
+	 * with the table of a closed block or a scan of the open block
+	 *
+	 * @param block	The index of the block
+	 * @param start	The start index of the range, in the block
+	 * @param end	The end index of the range, in the block
+	 * @return		The index of the leftmost minimum element in the range
+	 */
+	private int blockQueryIndex(int block, int start, int end)
+	{
+		if(block<this.blocks)
+		{
+			int i = start-(block*this.blockSize);
+			int j = end-start;
+			return (block*this.blockSize)+this.typeTable.tables()[this.blockToPreprocessMap[block]+i*this.blockSize-i*(i-1)/2+j];
+		}
+		int result = start;
+		for(int x=start+1; x<=end; x++)
+		{
+			if(this.arr[x]<this.arr[result])
+			{
+				result = x;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the bytes used by each component of the structure, with the headers and padding of its arrays
+	 * and the number of materialised Cartesian types. The elements are held by the structure, so the
+	 * allocated capacity of arr is a component and there is no input array.
+	 *
+	 * @return		The footprint report
+	 */
+	public MemoryFootprint memoryFootprint()
+	{
+		MemoryFootprint footprint = new MemoryFootprint("StreamingRMQ")
+				.object("object", 5*Integer.BYTES, 7)
+				.array("arr", this.arr)
+				.array("minArr", this.minArr)
+				.array("minPosArr", this.minPosArr)
+				.jagged("sparseArr", this.sparseArr)
+				.array("blockToPreprocessMap", this.blockToPreprocessMap)
+				.array("stack", this.stack);
+		this.typeTable.footprint(footprint);
+		return footprint;
+	}
+}
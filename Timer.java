@@ -1,30 +1,73 @@
 
-/** Timer class for roughly calculating running time of programs
+/** Timer class for measuring running time of programs
  *  @author rbk
  *  Usage:  Timer timer = new Timer();
  *          timer.start();
  *          timer.end();
  *          System.out.println(timer);  // output statistics
+ *
+ *  Measurement of short operations, with one sample per iteration:
+ *          Timer timer = new Timer();
+ *          timer.warmUp(100000, x -> rmq.query(lo[x], hi[x]));
+ *          timer.sample(100000, x -> rmq.query(lo[x], hi[x]));
+ *          System.out.println(timer);  // mean, p50, p99, p999, allocated bytes and GC counts
+ *
+ *  The time is read with System.nanoTime(); elapsedTime stays in msec. The allocated bytes are those of
+ *  the calling thread and the collections those of the whole JVM, between start() and end(), read
+ *  through the management beans when the JVM provides them.
  */
 
 package sxa190016;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
 public class Timer {
     long startTime, endTime, elapsedTime, memAvailable, memUsed;
     boolean ready;
-    
+
+    /** Nanosecond clock at start() and end(), and the elapsed nanoseconds */
+    long startNanos, elapsedNanos;
+
+    /** Bytes allocated by the calling thread and collections (count, msec) of all collectors since start() */
+    long startAllocated, allocatedBytes, startGcCount, gcCount, startGcTime, gcTime;
+
+    /** Per-iteration samples of sample(), in nanoseconds */
+    long[] samples = new long[0];
+    int sampleCount;
+
+    /** XOR of the results of the sampled operations, so that the JIT cannot drop them */
+    int sink;
+
+    /** Cost of a pair of System.nanoTime() calls, subtracted from every sample */
+    static final long CLOCK_OVERHEAD = clockOverhead();
+
+    /** Bean of the per-thread allocation counter, null if the JVM does not provide it */
+    static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
     public Timer() {
-	startTime = System.currentTimeMillis();
-	ready = false;
+	start();
     }
 
     public void start() {
 	startTime = System.currentTimeMillis();
+	startAllocated = allocatedBytes();
+	startGcCount = gcCount();
+	startGcTime = gcTime();
+	startNanos = System.nanoTime();
 	ready = false;
     }
 
     public Timer end() {
+	elapsedNanos = System.nanoTime()-startNanos;
 	endTime = System.currentTimeMillis();
-	elapsedTime = endTime-startTime;
+	elapsedTime = elapsedNanos/1000000;
+	allocatedBytes = allocatedBytes()-startAllocated;
+	gcCount = gcCount()-startGcCount;
+	gcTime = gcTime()-startGcTime;
 	memAvailable = Runtime.getRuntime().totalMemory();
 	memUsed = memAvailable - Runtime.getRuntime().freeMemory();
 	ready = true;
@@ -35,10 +78,123 @@ public class Timer {
 
     public long memory()   { if(!ready) { end(); }  return memUsed; }
 
+    /** Elapsed time between start() and end() in nanoseconds */
+    public long durationNanos() { if(!ready) { end(); }  return elapsedNanos; }
+
+    /** Bytes allocated by the calling thread between start() and end(), -1 if not available */
+    public long allocated() { if(!ready) { end(); }  return ALLOCATION==null ? -1 : allocatedBytes; }
+
+    /** Garbage collections of all collectors between start() and end() */
+    public long collections() { if(!ready) { end(); }  return gcCount; }
+
+    /** Run an operation through the same loop as sample() without keeping the samples, so that the JIT
+     *  compiles the loop and the operation before they are measured
+     *  @param iterations	Number of runs
+     *  @param task		The operation, given the index of the run
+     *  @return		This timer
+     */
+    public Timer warmUp(int iterations, IntUnaryOperator task) {
+	sample(iterations, task);
+	sampleCount = 0;
+	return this;
+    }
+
+    /** Run an operation with one sample per run, between start() and end(), replacing the previous samples
+     *  @param iterations	Number of runs
+     *  @param task		The operation, given the index of the run
+     *  @return		This timer
+     */
+    public Timer sample(int iterations, IntUnaryOperator task) {
+	samples = new long[iterations];
+	sampleCount = 0;
+	int sink = 0;
+	start();
+	for(int x=0; x<iterations; x++) {
+	    long t0 = System.nanoTime();
+	    sink ^= task.applyAsInt(x);
+	    samples[sampleCount++] = Math.max(0, System.nanoTime()-t0-CLOCK_OVERHEAD);
+	}
+	end();
+	this.sink ^= sink;
+	Arrays.sort(samples, 0, sampleCount);
+	return this;
+    }
+
+    /** Mean of the samples in nanoseconds, 0 if there are none */
+    public double mean() {
+	long sum = 0;
+	for(int x=0; x<sampleCount; x++) {
+	    sum += samples[x];
+	}
+	return sampleCount==0 ? 0 : (double) sum/sampleCount;
+    }
+
+    /** Percentile of the samples in nanoseconds, the nearest rank, 0 if there are none
+     *  @param p	The percentile, in [0, 100]
+     *  @return		The sample of rank ceil(p/100*count)
+     */
+    public long percentile(double p) {
+	if(sampleCount==0) { return 0; }
+	int rank = (int) Math.ceil(p/100*sampleCount);
+	return samples[Math.min(sampleCount, Math.max(rank, 1))-1];
+    }
+
+    /** Mean, percentiles and maximum of the samples; a mean above p999 comes from a few long pauses */
+    public String summary() {
+	return String.format("mean: %.1f nsec.  p50: %d  p99: %d  p999: %d  max: %d nsec.", mean(), percentile(50), percentile(99), percentile(99.9), percentile(100));
+    }
+
     public String toString() {
 	if(!ready) { end(); }
-        return "Time: " + elapsedTime + " msec.\n" + "Memory: " + (memUsed/1048576) + " MB / " + (memAvailable/1048576) + " MB.";
+	String s = "Time: " + elapsedTime + " msec. (" + elapsedNanos + " nsec.)\n" + "Memory: " + (memUsed/1048576) + " MB / " + (memAvailable/1048576) + " MB.";
+	if(sampleCount>0) {
+	    s += "\nSamples: " + sampleCount + "  " + summary();
+	}
+	s += "\nAllocated: " + (ALLOCATION==null ? "n/a" : (allocatedBytes/1024) + " KB") + "  GC: " + gcCount + " collections, " + gcTime + " msec.";
+	return s;
     }
 
-}
+    static long allocatedBytes() {
+	return ALLOCATION==null ? 0 : ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
 
+    static long gcCount() {
+	long count = 0;
+	for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+	    count += Math.max(0, gc.getCollectionCount());
+	}
+	return count;
+    }
+
+    static long gcTime() {
+	long time = 0;
+	for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+	    time += Math.max(0, gc.getCollectionTime());
+	}
+	return time;
+    }
+
+    static com.sun.management.ThreadMXBean allocationBean() {
+	ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+	    com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+	    sun.setThreadAllocatedMemoryEnabled(true);
+	    return sun;
+	}
+	return null;
+    }
+
+    /** Median of back-to-back System.nanoTime() calls */
+    static long clockOverhead() {
+	long[] d = new long[1001];
+	for(int r=0; r<20; r++) {
+	    for(int x=0; x<d.length; x++) {
+		long t0 = System.nanoTime();
+		d[x] = System.nanoTime()-t0;
+	    }
+	}
+	Arrays.sort(d);
+	return d[d.length/2];
+    }
+
+}
@@ -0,0 +1,243 @@
+package sxa190016;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 RMQ Benchmark: Short project 10
+ * 				JMH benchmarks for the build time, random-range query latency, batched query
+ * 				time and fixed-width query latency of every RMQ engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xmx16g", "--add-modules", "jdk.incubator.vector"})
+public class RMQBenchmark {
+	/**
+	 * Number of pre-generated query ranges, must be a power of 2
+	 */
+	private static final int QUERIES = 1 << 16;
+
+	/**
+	 * Size of the input array
+	 */
+	@Param({"1000000", "16000000", "128000000"})
+	public int n;
+
+	/**
+	 * Name of the RMQ engine under test, VectorHybridRMQ being HybridRMQ with BuildOptions.vectorScan(true)
+	 * and CachedFischerHeunRMQ being FischerHeunRMQ behind a TinyLFU CachedRMQ of 4096 ranges
+	 */
+	@Param({"HybridRMQ", "VectorHybridRMQ", "FischerHeunRMQ", "BitmaskRMQ", "CachedFischerHeunRMQ"})
+	public String engine;
+
+	/**
+	 * The input array
+	 */
+	private int [] arr;
+
+	/**
+	 * The preprocessed RMQ structure under test
+	 */
+	private RangeMinQuery rmq;
+
+	/**
+	 * Start indices of the random query ranges
+	 */
+	private int [] lo;
+
+	/**
+	 * End indices of the random query ranges
+	 */
+	private int [] hi;
+
+	/**
+	 * Answers of the batched random query ranges
+	 */
+	private int [] out;
+
+	/**
+	 * Position of the next query range
+	 */
+	private int cursor;
+
+	/**
+	 * Generate the input array and the random query ranges, and build the structure once
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Random rand = new Random(42);
+		this.arr = new int [this.n];
+		for(int i=0; i<this.n; i++)
+		{
+			this.arr[i] = rand.nextInt();
+		}
+
+		this.lo = new int [QUERIES];
+		this.hi = new int [QUERIES];
+		for(int x=0; x<QUERIES; x++)
+		{
+			int i = rand.nextInt(this.n);
+			int j = rand.nextInt(this.n);
+			this.lo[x] = Math.min(i, j);
+			this.hi[x] = Math.max(i, j);
+		}
+		this.out = new int [QUERIES];
+		this.rmq = builder(this.engine).build(this.arr);
+	}
+
+	/**
+	 * Get the builder for an engine name
+	 *
+	 * @param engine	The name of the RMQ engine
+	 * @return			The builder of the engine
+	 */
+	static RangeMinQuery.Builder builder(String engine)
+	{
+		switch(engine)
+		{
+		case "HybridRMQ":
+			return HybridRMQ::new;
+		case "VectorHybridRMQ":
+			return arr -> {
+				//Refuse to report the scalar fallback as the SIMD scan
+				HybridRMQ rmq = new HybridRMQ(arr, new BuildOptions().vectorScan(true));
+				if(!rmq.vectorScan())
+				{
+					throw new IllegalStateException("VectorBlockScanner is not available, compile vector/*.java and run with --add-modules jdk.incubator.vector");
+				}
+				return rmq;
+			};
+		case "FischerHeunRMQ":
+			return FischerHeunRMQ::new;
+		case "BitmaskRMQ":
+			return BitmaskRMQ::new;
+		case "CachedFischerHeunRMQ":
+			return arr -> new CachedRMQ(new FischerHeunRMQ(arr), 4096, CachedRMQ.Policy.TINY_LFU);
+		default:
+			throw new IllegalArgumentException("Unknown engine: "+engine);
+		}
+	}
+
+	/**
+	 * Measure the preprocessing time of the engine
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3, batchSize = 1)
+	@Measurement(iterations = 10, batchSize = 1)
+	public RangeMinQuery build()
+	{
+		return builder(this.engine).build(this.arr);
+	}
+
+	/**
+	 * Measure the latency of a query on a random range
+	 */
+	@Benchmark
+	public int randomQuery()
+	{
+		int x = this.cursor++ & (QUERIES-1);
+		return this.rmq.query(this.lo[x], this.hi[x]);
+	}
+
+	/**
+	 * Measure the time per query of a loop of query(i, j) over all the random ranges, the baseline of batchQuery()
+	 *
+	 * @return		The combined answers, so that no query is optimised away
+	 */
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int loopQuery()
+	{
+		int sink = 0;
+		for(int x=0; x<QUERIES; x++)
+		{
+			sink ^= this.rmq.query(this.lo[x], this.hi[x]);
+		}
+		return sink;
+	}
+
+	/**
+	 * Measure the time per query of query(lo, hi, out) on all the random ranges at once
+	 *
+	 * @return		The answers of the batch
+	 */
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int [] batchQuery()
+	{
+		this.rmq.query(this.lo, this.hi, this.out);
+		return this.out;
+	}
+
+	/**
+	 * Measure the latency of a query on a fixed range centered in the array
+	 *
+	 * @param range	The fixed range to be queried
+	 * @param bh	Blackhole consuming the result
+	 */
+	@Benchmark
+	public void fixedWidthQuery(FixedWidth range, Blackhole bh)
+	{
+		bh.consume(this.rmq.query(range.i, range.j));
+	}
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 RMQ Benchmark: Short project 10
+	 * 				Fixed range covering the given percentage of the input array.
+	 */
+	@State(Scope.Benchmark)
+	public static class FixedWidth {
+		/**
+		 * Percentage of the input array covered by the range
+		 */
+		@Param({"10", "20", "30", "40", "50", "60", "70", "80", "90", "100"})
+		public int percent;
+
+		/**
+		 * Start index of the range
+		 */
+		public int i;
+
+		/**
+		 * End index of the range
+		 */
+		public int j;
+
+		/**
+		 * Center the range in the input array, as done in main()
+		 *
+		 * @param bench	The benchmark state holding the input size
+		 */
+		@Setup(Level.Trial)
+		public void setup(RMQBenchmark bench)
+		{
+			this.i = bench.n/100*(50-this.percent/2);
+			this.j = this.percent==100?bench.n-1:bench.n/100*(50+this.percent/2);
+		}
+	}
+}
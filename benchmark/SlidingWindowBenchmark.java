@@ -0,0 +1,133 @@
+package sxa190016;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Sliding Window Benchmark: Short project 10
+ * 				JMH benchmarks for the latency of advancing a window of W elements by one element
+ * 				and reading its minimum, with SlidingWindowRMQ and with query(t-W+1, t) on a
+ * 				static RMQ structure built over the whole stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xmx4g"})
+public class SlidingWindowBenchmark {
+	/**
+	 * Size of the stream, must be a power of 2
+	 */
+	private static final int STREAM = 1 << 24;
+
+	/**
+	 * Number of elements of the window
+	 */
+	@Param({"16", "1024", "65536"})
+	public int window;
+
+	/**
+	 * The stream of elements
+	 */
+	private int [] arr;
+
+	/**
+	 * The sliding window
+	 */
+	private SlidingWindowRMQ slidingWindow;
+
+	/**
+	 * Position of the next element of the stream
+	 */
+	private int t;
+
+	/**
+	 * Generate the stream and fill the window once
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Random rand = new Random(42);
+		this.arr = new int [STREAM];
+		for(int i=0; i<STREAM; i++)
+		{
+			this.arr[i] = rand.nextInt();
+		}
+		this.slidingWindow = new SlidingWindowRMQ(this.window);
+		for(this.t=0; this.t<this.window; this.t++)
+		{
+			this.slidingWindow.push(this.arr[this.t]);
+		}
+	}
+
+	/**
+	 * Measure the latency of pushing the next element into the sliding window and reading its minimum
+	 */
+	@Benchmark
+	public int slidingWindow()
+	{
+		this.slidingWindow.push(this.arr[this.t++ & (STREAM-1)]);
+		return this.slidingWindow.min();
+	}
+
+	/**
+	 * Measure the latency of querying the window ending at the next element on the static structure
+	 *
+	 * @param engine	The static structure over the whole stream
+	 * @return			The minimum of the window
+	 */
+	@Benchmark
+	public int staticQuery(StaticEngine engine)
+	{
+		int end = Math.max(this.t++ & (STREAM-1), this.window-1);
+		return engine.rmq.query(end-this.window+1, end);
+	}
+
+	/**
+	 * @author sxa190016
+	 * @author bsv180000
+	 * @version 1.0 Sliding Window Benchmark: Short project 10
+	 * 				Static RMQ structure over the whole stream, a state of its own so that only
+	 * 				staticQuery() is run once per engine.
+	 */
+	@State(Scope.Benchmark)
+	public static class StaticEngine {
+		/**
+		 * Name of the static RMQ engine compared with the sliding window
+		 */
+		@Param({"HybridRMQ", "FischerHeunRMQ"})
+		public String engine;
+
+		/**
+		 * The static structure over the whole stream
+		 */
+		private RangeMinQuery rmq;
+
+		/**
+		 * Build the static structure over the stream of the benchmark
+		 *
+		 * @param bench	The benchmark state holding the stream
+		 */
+		@Setup(Level.Trial)
+		public void setup(SlidingWindowBenchmark bench)
+		{
+			this.rmq = RMQBenchmark.builder(this.engine).build(bench.arr);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package sxa190016;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @author sxa190016
+ * @author bsv180000
+ * @version 1.0 Vector Block Scanner: Short project 10
+ * 				BlockScanner comparing a full SIMD register of elements per instruction with the
+ * 				jdk.incubator.vector API: the lanes keep a running minimum of value^mask, which is
+ * 				reduced to one element at the end, and the remainder shorter than a register is
+ * 				scanned one element at a time. Compile and run with --add-modules jdk.incubator.vector.
+ */
+final class VectorBlockScanner implements BlockScanner {
+	/**
+	 * Widest vector shape supported by the processor, e.g. 8 ints with AVX2 and 16 with AVX-512
+	 */
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	/**
+	 * Find the minimum element in a given range, every comparison made on value^mask
+	 *
+	 * @param arr		The array to be scanned
+	 * @param start		The start index of the range
+	 * @param end		The last+1 index of the range, greater than start
+	 * @param mask		0 to find the minimum, -1 to find the maximum
+	 * @return			The minimum element in the range
+	 */
+	public int min(int [] arr, int start, int end, int mask)
+	{
+		//Keep one running minimum per lane over the full registers of the range, the same code for any length
+		int i = start;
+		int bound = start+SPECIES.loopBound(end-start);
+		IntVector acc = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+		for(; i<bound; i+=SPECIES.length())
+		{
+			acc = acc.min(IntVector.fromArray(SPECIES, arr, i).lanewise(VectorOperators.XOR, mask));
+		}
+		int result = acc.reduceLanes(VectorOperators.MIN);
+		for(; i<end; i++)
+		{
+			result = Math.min(result, arr[i]^mask);
+		}
+		return result^mask;
+	}
+}